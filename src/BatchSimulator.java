@@ -0,0 +1,341 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * BatchSimulator - runs many boards to their fixpoints at once, spread across
+ * the processor's cores on a ForkJoinPool. Every board is its own Simulation
+ * and simulations share nothing, so the boards never wait on each other
+ */
+public class BatchSimulator
+{
+	/* Variables */
+	private ForkJoinPool pool;
+
+	/**
+	 * Constructs a new BatchSimulator that uses every core
+	 */
+	public BatchSimulator()
+	{
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Constructs a new BatchSimulator that uses a number of threads
+	 *
+	 * @param parallelism the number of boards to simulate at the same time
+	 */
+	public BatchSimulator(int parallelism)
+	{
+		pool = new ForkJoinPool(parallelism);
+	}
+
+	/**
+	 * Runs each board to its fixpoint
+	 *
+	 * @param boards the boards to be simulated
+	 * @return the result of each board, in the same order as the boards
+	 */
+	public Result[] simulate(Collection<Simulation> boards)
+	{
+		Simulation[] simulations = boards.toArray(new Simulation[boards.size()]);
+		Result[] results = new Result[simulations.length];
+		pool.invoke(new BatchTask(simulations, null, null, results, 0,
+				simulations.length));
+		return results;
+	}
+
+	/**
+	 * Loads each level file and runs its board to its fixpoint. The files are
+	 * loaded in parallel too. A file that cannot be loaded does not stop the
+	 * others, and its result says what went wrong
+	 *
+	 * @param levelFiles the ".op" or ".opb" files of the boards to be
+	 *            simulated
+	 * @return the result of each board, in the same order as the files
+	 */
+	public Result[] simulateFiles(File[] levelFiles)
+	{
+		Result[] results = new Result[levelFiles.length];
+		pool.invoke(new BatchTask(null, levelFiles, null, results, 0,
+				levelFiles.length));
+		return results;
+	}
+
+	/**
+	 * Reads each level out of a level pack and runs its board to its
+	 * fixpoint. A level that cannot be read does not stop the others, and its
+	 * result says what went wrong
+	 *
+	 * @param pack the level pack
+	 * @return the result of each level, in order
+	 */
+	public Result[] simulatePack(LevelPack pack)
+	{
+		Result[] results = new Result[pack.getNoOfLevels()];
+		pool.invoke(new BatchTask(null, null, pack, results, 0,
+				results.length));
+		return results;
+	}
+
+	/**
+	 * Shuts down the threads of the pool once the batches are done
+	 */
+	public void shutdown()
+	{
+		pool.shutdown();
+	}
+
+	/**
+	 * Simulates every level file in the levels folder and every level in its
+	 * level pack and prints whether each one is won, how many steps it took
+	 * and if it kept repeating
+	 *
+	 * @param args the number of threads to use (optional)
+	 */
+	public static void main(String[] args)
+	{
+		// Find the level files of both kinds
+		List<File> levelFiles = new ArrayList<File>();
+		for (File file : new File(Main.LEVEL_FOLDER).listFiles())
+			if (file.isFile()
+					&& (file.getName().endsWith(LevelFile.TEXT_EXTENSION) || file
+							.getName().endsWith(LevelFile.BINARY_EXTENSION)))
+				levelFiles.add(file);
+		File[] files = levelFiles.toArray(new File[levelFiles.size()]);
+		Arrays.sort(files);
+		LevelPack pack = Main.getLevelPack();
+
+		BatchSimulator batch = args.length > 0 ? new BatchSimulator(
+				Integer.parseInt(args[0])) : new BatchSimulator();
+		long startTime = System.nanoTime();
+		Result[] results = batch.simulateFiles(files);
+		Result[] packResults = pack == null ? new Result[0] : batch
+				.simulatePack(pack);
+		long time = System.nanoTime() - startTime;
+		batch.shutdown();
+
+		for (int board = 0; board < files.length; board++)
+			System.out.println(files[board].getName() + ": " + results[board]);
+		for (int level = 0; level < packResults.length; level++)
+			System.out.println(LevelPack.PACK_FILE + " level " + (level + 1)
+					+ ": " + packResults[level]);
+		System.out.println(files.length + packResults.length + " boards in "
+				+ time / 1000000 + " ms");
+	}
+
+	/**
+	 * Result - the outcome of running one board to its fixpoint
+	 */
+	public static class Result
+	{
+		/* Variables */
+		private boolean won;
+		private int steps;
+		private int period;
+		private String error;
+
+		/**
+		 * Constructs a new Result
+		 *
+		 * @param won whether or not the target had power
+		 * @param steps the number of steps taken, or -1 if the board never
+		 *            stopped changing
+		 * @param period the number of steps in the cycle the board repeated,
+		 *            or 0
+		 */
+		public Result(boolean won, int steps, int period)
+		{
+			this.won = won;
+			this.steps = steps;
+			this.period = period;
+		}
+
+		/**
+		 * Constructs a new Result for a board that could not be simulated
+		 *
+		 * @param error what went wrong
+		 */
+		public Result(String error)
+		{
+			this(false, -1, 0);
+			this.error = error;
+		}
+
+		/**
+		 * Determines whether or not the target had power
+		 *
+		 * @return whether or not the board was won
+		 */
+		public boolean isWon()
+		{
+			return won;
+		}
+
+		/**
+		 * Gives access to the number of steps the board took
+		 *
+		 * @return the number of steps, or -1 if the board never stopped
+		 *         changing
+		 */
+		public int getSteps()
+		{
+			return steps;
+		}
+
+		/**
+		 * Gives access to the number of ticks the board took, counting every
+		 * conduction of every step
+		 *
+		 * @return the number of ticks, or -1 if the board never stopped
+		 *         changing
+		 */
+		public int getTicks()
+		{
+			if (steps == -1)
+				return -1;
+			return steps * Simulation.CONDUCTIONS_PER_STEP;
+		}
+
+		/**
+		 * Determines whether or not the board stopped changing
+		 *
+		 * @return whether or not the board settled
+		 */
+		public boolean isSettled()
+		{
+			return steps != -1 && period == 0;
+		}
+
+		/**
+		 * Gives access to the length of the cycle the board repeated
+		 *
+		 * @return the number of steps in the cycle, or 0 if it did not repeat
+		 */
+		public int getPeriod()
+		{
+			return period;
+		}
+
+		/**
+		 * Gives access to what went wrong if the board could not be simulated
+		 *
+		 * @return the problem, or null if the board was simulated
+		 */
+		public String getError()
+		{
+			return error;
+		}
+
+		/**
+		 * Describes the result
+		 *
+		 * @return the description of the result
+		 */
+		public String toString()
+		{
+			if (error != null)
+				return "could not be simulated: " + error;
+			String outcome;
+			if (steps == -1)
+				outcome = "still changing";
+			else if (period > 0)
+				outcome = "repeating every " + period + " steps";
+			else
+				outcome = "settled";
+			return (won ? "won" : "not won") + ", " + outcome + " after "
+					+ steps + " steps";
+		}
+	}
+
+	/**
+	 * BatchTask - a fork/join task that splits a range of boards in half
+	 * until a single board is left and then simulates it
+	 */
+	private static class BatchTask extends RecursiveAction
+	{
+		// Serial Version ID to remove error
+		private static final long serialVersionUID = 1L;
+
+		/* Variables */
+		private Simulation[] simulations;
+		private File[] levelFiles;
+		private LevelPack pack;
+		private Result[] results;
+		private int from;
+		private int to;
+
+		/**
+		 * Constructs a new BatchTask over a range of boards, either already
+		 * loaded or still to be loaded from their files or a level pack
+		 *
+		 * @param simulations the loaded boards, or null
+		 * @param levelFiles the files of the boards, or null
+		 * @param pack the level pack holding the boards, or null
+		 * @param results where the results of the boards go
+		 * @param from the first board of the range
+		 * @param to the board after the last board of the range
+		 */
+		BatchTask(Simulation[] simulations, File[] levelFiles,
+				LevelPack pack, Result[] results, int from, int to)
+		{
+			this.simulations = simulations;
+			this.levelFiles = levelFiles;
+			this.pack = pack;
+			this.results = results;
+			this.from = from;
+			this.to = to;
+		}
+
+		/**
+		 * Simulates the range of boards, splitting it between two tasks if
+		 * it has more than one board
+		 */
+		protected void compute()
+		{
+			if (to - from > 1)
+			{
+				int middle = (from + to) >>> 1;
+				invokeAll(new BatchTask(simulations, levelFiles, pack,
+						results, from, middle), new BatchTask(simulations,
+						levelFiles, pack, results, middle, to));
+				return;
+			}
+
+			// A board that cannot be loaded or run only spoils its own result
+			for (int board = from; board < to; board++)
+				try
+				{
+					Simulation simulation;
+					if (simulations != null)
+						simulation = simulations[board];
+					else if (levelFiles != null)
+						simulation = new Simulation(levelFiles[board]);
+					else
+						simulation = new Simulation(pack.getLevel(board + 1));
+
+					int steps = simulation.runToFixpoint();
+					results[board] = new Result(simulation.isWon(), steps,
+							simulation.getPeriod());
+				}
+				catch (FileNotFoundException e)
+				{
+					results[board] = new Result("file not found");
+				}
+				catch (UncheckedIOException e)
+				{
+					results[board] = new Result(e.getCause().getMessage());
+				}
+				catch (IllegalArgumentException e)
+				{
+					results[board] = new Result(e.getMessage());
+				}
+		}
+	}
+}
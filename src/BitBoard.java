@@ -0,0 +1,251 @@
+import java.util.Arrays;
+
+/**
+ * BitBoard - one bit for every square of a board, packed into longs row by row
+ * so whole rows of squares can be filled, scanned and combined with a few
+ * shift, and and or operations. Rows with no set bits all share one empty
+ * row, so a row is only stored once a bit in it is set
+ */
+public class BitBoard
+{
+	/* Constants */
+	// Bits in each word
+	public static final int WORD_SIZE = 64;
+	private static final int WORD_SHIFT = 6;
+
+	/* Variables */
+	private int noOfRows;
+	private int noOfCols;
+	private int wordsPerRow;
+	private long[][] rows;
+	private long[] emptyRow;
+
+	/**
+	 * Constructs a new BitBoard with every bit clear
+	 *
+	 * @param noOfRows the number of rows
+	 * @param noOfCols the number of columns
+	 */
+	public BitBoard(int noOfRows, int noOfCols)
+	{
+		this.noOfRows = noOfRows;
+		this.noOfCols = noOfCols;
+		wordsPerRow = (noOfCols + WORD_SIZE - 1) >>> WORD_SHIFT;
+		emptyRow = new long[wordsPerRow];
+		rows = new long[noOfRows][];
+		Arrays.fill(rows, emptyRow);
+	}
+
+	/**
+	 * Gives access to a row that bits can be set in, making it first if the
+	 * row was still the empty row
+	 *
+	 * @param row the row
+	 * @return the words of the row
+	 */
+	private long[] rowToSet(int row)
+	{
+		if (rows[row] == emptyRow)
+			rows[row] = new long[wordsPerRow];
+		return rows[row];
+	}
+
+	/**
+	 * Gives access to the number of rows
+	 *
+	 * @return the number of rows
+	 */
+	public int getNoOfRows()
+	{
+		return noOfRows;
+	}
+
+	/**
+	 * Gives access to the number of columns
+	 *
+	 * @return the number of columns
+	 */
+	public int getNoOfCols()
+	{
+		return noOfCols;
+	}
+
+	/**
+	 * Gives access to the number of words that make up each row
+	 *
+	 * @return the number of words in each row
+	 */
+	public int getWordsPerRow()
+	{
+		return wordsPerRow;
+	}
+
+	/**
+	 * Gives access to a word of a row. Bit b of word w is column w * 64 + b
+	 *
+	 * @param row the row
+	 * @param word the word of the row
+	 * @return the bits of the word
+	 */
+	public long getWord(int row, int word)
+	{
+		return rows[row][word];
+	}
+
+	/**
+	 * Determines whether or not the bit of a square is set
+	 *
+	 * @param row the row of the square
+	 * @param col the column of the square
+	 * @return whether or not the bit is set
+	 */
+	public boolean get(int row, int col)
+	{
+		return (rows[row][col >>> WORD_SHIFT] & 1L << col) != 0;
+	}
+
+	/**
+	 * Sets the bit of a square
+	 *
+	 * @param row the row of the square
+	 * @param col the column of the square
+	 * @return whether or not the bit was clear before
+	 */
+	public boolean set(int row, int col)
+	{
+		int word = col >>> WORD_SHIFT;
+		if ((rows[row][word] & 1L << col) != 0)
+			return false;
+		rowToSet(row)[word] |= 1L << col;
+		return true;
+	}
+
+	/**
+	 * Clears the bit of a square
+	 *
+	 * @param row the row of the square
+	 * @param col the column of the square
+	 */
+	public void clear(int row, int col)
+	{
+		// Nothing is ever cleared in the empty row since it has no set bits
+		long[] words = rows[row];
+		if (words != emptyRow)
+			words[col >>> WORD_SHIFT] &= ~(1L << col);
+	}
+
+	/**
+	 * Clears every bit of the board. Only the stored rows need clearing and
+	 * they are kept to be set again
+	 */
+	public void clear()
+	{
+		for (long[] words : rows)
+			if (words != emptyRow)
+				Arrays.fill(words, 0);
+	}
+
+	/**
+	 * Makes the mask of the bits of a word that fall in a range of columns
+	 *
+	 * @param word the word of the row
+	 * @param fromCol the first column of the range
+	 * @param toCol the column after the last column of the range
+	 * @return the bits of the word in the range
+	 */
+	public static long rangeMask(int word, int fromCol, int toCol)
+	{
+		int wordStart = word << WORD_SHIFT;
+		if (fromCol >= wordStart + WORD_SIZE || toCol <= wordStart
+				|| fromCol >= toCol)
+			return 0;
+
+		long mask = -1L;
+		if (fromCol > wordStart)
+			mask &= -1L << fromCol;
+		if (toCol < wordStart + WORD_SIZE)
+			mask &= -1L >>> -toCol;
+		return mask;
+	}
+
+	/**
+	 * Sets some bits of a word
+	 *
+	 * @param row the row
+	 * @param word the word of the row
+	 * @param bits the bits to be set
+	 * @return the bits that were clear before
+	 */
+	public long setBits(int row, int word, long bits)
+	{
+		long added = bits & ~rows[row][word];
+		if (added != 0)
+			rowToSet(row)[word] |= added;
+		return added;
+	}
+
+	/**
+	 * Clears some bits of a word
+	 *
+	 * @param row the row
+	 * @param word the word of the row
+	 * @param bits the bits to be cleared
+	 * @return the bits that were set before
+	 */
+	public long clearBits(int row, int word, long bits)
+	{
+		long removed = bits & rows[row][word];
+		if (removed != 0)
+			rows[row][word] &= ~removed;
+		return removed;
+	}
+
+	/**
+	 * Finds the first set bit in a row at or to the right of a column
+	 *
+	 * @param row the row to search
+	 * @param fromCol the column to start from
+	 * @return the column of the set bit, or -1 if there is none
+	 */
+	public int nextSetBit(int row, int fromCol)
+	{
+		if (fromCol >= noOfCols)
+			return -1;
+
+		int word = fromCol >>> WORD_SHIFT;
+		long[] words = rows[row];
+		long bits = words[word] & -1L << fromCol;
+		while (bits == 0)
+		{
+			if (++word == wordsPerRow)
+				return -1;
+			bits = words[word];
+		}
+		return (word << WORD_SHIFT) + Long.numberOfTrailingZeros(bits);
+	}
+
+	/**
+	 * Finds the first set bit in a row at or to the left of a column
+	 *
+	 * @param row the row to search
+	 * @param fromCol the column to start from
+	 * @return the column of the set bit, or -1 if there is none
+	 */
+	public int previousSetBit(int row, int fromCol)
+	{
+		if (fromCol < 0)
+			return -1;
+
+		int word = fromCol >>> WORD_SHIFT;
+		long[] words = rows[row];
+		long bits = words[word] & -1L >>> ~fromCol;
+		while (bits == 0)
+		{
+			if (--word < 0)
+				return -1;
+			bits = words[word];
+		}
+		return (word << WORD_SHIFT) + WORD_SIZE - 1
+				- Long.numberOfLeadingZeros(bits);
+	}
+}
@@ -0,0 +1,193 @@
+import java.util.Arrays;
+
+/**
+ * ChunkedBoard - one int for every square of a board, stored in 64 x 64
+ * chunks so big boards that are mostly empty only pay for the chunks that
+ * hold something. Chunks that were never written all share one chunk filled
+ * with the board's default value, which is never changed
+ */
+public class ChunkedBoard
+{
+	/* Constants */
+	// Squares along each side of a chunk
+	public static final int CHUNK_SIZE = 64;
+	private static final int CHUNK_SHIFT = 6;
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	/* Variables */
+	private int noOfRows;
+	private int noOfCols;
+	private int chunkCols;
+	private int defaultValue;
+
+	// Chunk (chunkRow * chunkCols + chunkCol) holds square (row, col) at
+	// (row % 64) * 64 + col % 64
+	private int[][] chunks;
+	private int[] emptyChunk;
+	private int noOfChunks;
+
+	/**
+	 * Constructs a new ChunkedBoard with every square at a default value
+	 *
+	 * @param noOfRows the number of rows
+	 * @param noOfCols the number of columns
+	 * @param defaultValue the value of squares that were never set
+	 */
+	public ChunkedBoard(int noOfRows, int noOfCols, int defaultValue)
+	{
+		this.noOfRows = noOfRows;
+		this.noOfCols = noOfCols;
+		this.defaultValue = defaultValue;
+		chunkCols = (noOfCols + CHUNK_MASK) >>> CHUNK_SHIFT;
+		int chunkRows = (noOfRows + CHUNK_MASK) >>> CHUNK_SHIFT;
+
+		emptyChunk = new int[CHUNK_SIZE * CHUNK_SIZE];
+		if (defaultValue != 0)
+			Arrays.fill(emptyChunk, defaultValue);
+		chunks = new int[chunkRows * chunkCols][];
+		Arrays.fill(chunks, emptyChunk);
+	}
+
+	/**
+	 * Gives access to the number of rows
+	 *
+	 * @return the number of rows
+	 */
+	public int getNoOfRows()
+	{
+		return noOfRows;
+	}
+
+	/**
+	 * Gives access to the number of columns
+	 *
+	 * @return the number of columns
+	 */
+	public int getNoOfCols()
+	{
+		return noOfCols;
+	}
+
+	/**
+	 * Gives access to the number of chunks that have been made because
+	 * something was set in them, whether or not they were cleared since
+	 *
+	 * @return the number of chunks in use
+	 */
+	public int getNoOfChunks()
+	{
+		return noOfChunks;
+	}
+
+	/**
+	 * Gives access to the value of a square
+	 *
+	 * @param row the row of the square
+	 * @param col the column of the square
+	 * @return the value of the square
+	 */
+	public int get(int row, int col)
+	{
+		return getChunk(row, col)[indexOf(row, col)];
+	}
+
+	/**
+	 * Sets the value of a square, making its chunk first if it was empty
+	 *
+	 * @param row the row of the square
+	 * @param col the column of the square
+	 * @param value the new value of the square
+	 */
+	public void set(int row, int col, int value)
+	{
+		int chunk = (row >>> CHUNK_SHIFT) * chunkCols + (col >>> CHUNK_SHIFT);
+		int[] values = chunks[chunk];
+		if (values == emptyChunk)
+		{
+			// An empty chunk already has the default value everywhere
+			if (value == defaultValue)
+				return;
+			values = makeChunk(chunk);
+		}
+		values[indexOf(row, col)] = value;
+	}
+
+	/**
+	 * Makes a chunk of its own for a chunk that was empty
+	 *
+	 * @param chunk the chunk
+	 * @return the values of the new chunk
+	 */
+	private int[] makeChunk(int chunk)
+	{
+		chunks[chunk] = emptyChunk.clone();
+		noOfChunks++;
+		return chunks[chunk];
+	}
+
+	/**
+	 * Gives access to the values of the chunk that holds a square, for loops
+	 * that go along a row a chunk at a time. The values may be the shared
+	 * empty chunk, so they must not be changed
+	 *
+	 * @param row the row of the square
+	 * @param col the column of the square
+	 * @return the values of the chunk, with the square at indexOf(row, col)
+	 */
+	public int[] getChunk(int row, int col)
+	{
+		return chunks[(row >>> CHUNK_SHIFT) * chunkCols + (col >>> CHUNK_SHIFT)];
+	}
+
+	/**
+	 * Gives access to the values of the chunk that holds a square so they can
+	 * be changed, making the chunk first if it was empty
+	 *
+	 * @param row the row of the square
+	 * @param col the column of the square
+	 * @return the values of the chunk, with the square at indexOf(row, col)
+	 */
+	public int[] getChunkToSet(int row, int col)
+	{
+		int chunk = (row >>> CHUNK_SHIFT) * chunkCols + (col >>> CHUNK_SHIFT);
+		if (chunks[chunk] == emptyChunk)
+			return makeChunk(chunk);
+		return chunks[chunk];
+	}
+
+	/**
+	 * Finds where a square is in the values of its chunk
+	 *
+	 * @param row the row of the square
+	 * @param col the column of the square
+	 * @return the index of the square in its chunk
+	 */
+	public static int indexOf(int row, int col)
+	{
+		return (row & CHUNK_MASK) << CHUNK_SHIFT | col & CHUNK_MASK;
+	}
+
+	/**
+	 * Adds to the value of a square
+	 *
+	 * @param row the row of the square
+	 * @param col the column of the square
+	 * @param change the amount to add
+	 */
+	public void add(int row, int col, int change)
+	{
+		set(row, col, get(row, col) + change);
+	}
+
+	/**
+	 * Puts every square back to the default value. The chunks that were made
+	 * are kept and filled again, so a board that is cleared and filled over
+	 * and over does not make its chunks over and over
+	 */
+	public void clear()
+	{
+		for (int[] values : chunks)
+			if (values != emptyChunk)
+				Arrays.fill(values, defaultValue);
+	}
+}
@@ -1,7 +1,5 @@
 import java.awt.*;
 
-import javax.swing.*;
-
 /**
  * Item - the item objects that holds all of the items, their states, and images
  * 
@@ -31,9 +29,28 @@ public class Item extends Rectangle
 	public static final int STATE_ON = 1;
 	public static final int STATE_OFF = -1;
 
-	// Images
-	private static final String IMAGE_FOLDER = "./images/";
+	// Item Behaviours, indexed by item type
+	// Energy of an item that does not give off or convert any energy
+	public static final int NO_ENERGY = -1;
+
+	// Whether or not each item turns on when it has electricity
+	public static final boolean[] SWITCHES_ON = { false, true, true, true,
+			true, true, false, true, true, true, true };
+	// The energy each item gives off when it has electricity
+	public static final int[] EMITTED_ENERGY = { NO_ENERGY, NO_ENERGY,
+			Square.LIGHT, NO_ENERGY, Square.RADIO, NO_ENERGY, NO_ENERGY,
+			NO_ENERGY, NO_ENERGY, Square.WATER, NO_ENERGY };
+	// The energy each item converts back to electricity. Light passes
+	// through the items that convert it and so does water
+	public static final int[] CONVERTED_ENERGY = { NO_ENERGY, NO_ENERGY,
+			NO_ENERGY, Square.LIGHT, NO_ENERGY, Square.RADIO, NO_ENERGY,
+			NO_ENERGY, NO_ENERGY, NO_ENERGY, Square.WATER };
+	// Whether or not each item teleports the item above it when it has
+	// electricity
+	public static final boolean[] TELEPORTS = { false, false, false, false,
+			false, false, false, true, false, false, false };
 
+	// Images
 	public static final String[] OFF_FILE_NAMES = { "source.png", "target.png",
 			"lightBulb.png", "solarPanel.png", "radio.png", "dish.png",
 			"block.png", "tSender.png", "tReceiver.png", "kettle.png",
@@ -52,6 +69,7 @@ public class Item extends Rectangle
 	private int type, state;
 	private boolean locked, hovered;
 	Image image, infoImage;
+	private Image offImage, onImage;
 
 	/**
 	 * Constructs a new Item object
@@ -68,10 +86,10 @@ public class Item extends Rectangle
 		// Initialize the item type, state and images
 		type = itemType;
 		state = STATE_OFF;
-		image = new ImageIcon(IMAGE_FOLDER + OFF_FILE_NAMES[itemType])
-				.getImage();
-		infoImage = new ImageIcon(IMAGE_FOLDER + INFO_FILE_NAMES[itemType])
-				.getImage();
+		offImage = SpriteCache.getImage(OFF_FILE_NAMES[itemType]);
+		onImage = SpriteCache.getImage(ON_FILE_NAMES[itemType]);
+		image = offImage;
+		infoImage = SpriteCache.getImage(INFO_FILE_NAMES[itemType]);
 
 		// Lock the item if it is meant to be immovable
 		if (itemType == SOURCE || itemType == TARGET)
@@ -118,14 +136,12 @@ public class Item extends Rectangle
 	public void switchState()
 	{
 		state *= -1;
-		// Loads the corresponding image for the item according to the current
+		// Show the corresponding image for the item according to the current
 		// state
 		if (state == STATE_ON)
-			image = new ImageIcon(IMAGE_FOLDER + ON_FILE_NAMES[type])
-					.getImage();
+			image = onImage;
 		else
-			image = new ImageIcon(IMAGE_FOLDER + OFF_FILE_NAMES[type])
-					.getImage();
+			image = offImage;
 	}
 
 	/**
@@ -189,12 +205,34 @@ public class Item extends Rectangle
 	 */
 	public void draw(Graphics g)
 	{
-		g.drawImage(image, x, y, null);
+		drawSprite(g);
 
 		// If the item is being hovered draw the info image in the bottom corner
 		// of the screen in the info box
 		if (hovered)
-			g.drawImage(infoImage, 657, 297, null);
+			drawInfo(g, 657, 297);
+	}
+
+	/**
+	 * Draws only this item's image in a Graphics context, without its info
+	 * 
+	 * @param g the Graphics context to draw the item in
+	 */
+	public void drawSprite(Graphics g)
+	{
+		g.drawImage(image, x, y, null);
+	}
+
+	/**
+	 * Draws this item's info image in a Graphics context
+	 * 
+	 * @param g the Graphics context to draw the info in
+	 * @param infoX the x coordinate of the info box
+	 * @param infoY the y coordinate of the info box
+	 */
+	public void drawInfo(Graphics g, int infoX, int infoY)
+	{
+		g.drawImage(infoImage, infoX, infoY, null);
 	}
 
 	/**
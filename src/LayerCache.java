@@ -0,0 +1,188 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LayerCache - keeps a layer of a panel that rarely changes, such as the
+ * background, wires and items of a board, drawn in offscreen tiles. Painting
+ * copies the tiles instead of drawing the layer again, and only the tiles of
+ * the parts that were changed are drawn again. Big boards only keep the tiles
+ * that were drawn most recently
+ */
+public class LayerCache
+{
+	/* Constants */
+	// Width/height of each tile
+	public static final int TILE_SIZE = 512;
+
+	// Most tiles kept at once
+	public static final int MAX_TILES = 64;
+
+	/* Variables */
+	private Painter painter;
+	private int width;
+	private int height;
+	private int tileCols;
+
+	// Tiles by tileRow * tileCols + tileCol, the least recently drawn first
+	private LinkedHashMap<Integer, Tile> tiles;
+
+	/**
+	 * Constructs a new LayerCache with no tiles drawn yet
+	 *
+	 * @param width the width of the layer
+	 * @param height the height of the layer
+	 * @param painter draws the layer into the tiles
+	 */
+	public LayerCache(int width, int height, Painter painter)
+	{
+		this.width = width;
+		this.height = height;
+		this.painter = painter;
+		tileCols = (width + TILE_SIZE - 1) / TILE_SIZE;
+		tiles = new LinkedHashMap<Integer, Tile>(16, 0.75f, true)
+		{
+			// Serial Version ID to remove error
+			private static final long serialVersionUID = 1L;
+
+			protected boolean removeEldestEntry(Map.Entry<Integer, Tile> eldest)
+			{
+				return size() > MAX_TILES;
+			}
+		};
+	}
+
+	/**
+	 * Copies the tiles inside the Graphics context's clip, drawing the ones
+	 * that are missing or were changed first
+	 *
+	 * @param g the Graphics context to paint the layer in
+	 * @param configuration the configuration of the screen the tiles are
+	 *            copied to, or null
+	 */
+	public void paint(Graphics g, GraphicsConfiguration configuration)
+	{
+		Rectangle clip = g.getClipBounds();
+		if (clip == null)
+			clip = new Rectangle(width, height);
+		int firstRow = Math.max(clip.y / TILE_SIZE, 0);
+		int lastRow = Math.min((clip.y + clip.height - 1) / TILE_SIZE,
+				(height - 1) / TILE_SIZE);
+		int firstCol = Math.max(clip.x / TILE_SIZE, 0);
+		int lastCol = Math.min((clip.x + clip.width - 1) / TILE_SIZE,
+				tileCols - 1);
+
+		for (int row = firstRow; row <= lastRow; row++)
+			for (int col = firstCol; col <= lastCol; col++)
+			{
+				Integer key = row * tileCols + col;
+				Tile tile = tiles.get(key);
+				if (tile == null)
+				{
+					tile = new Tile(createImage(configuration));
+					tiles.put(key, tile);
+				}
+				if (!tile.valid)
+					drawTile(tile, col * TILE_SIZE, row * TILE_SIZE);
+				g.drawImage(tile.image, col * TILE_SIZE, row * TILE_SIZE, null);
+			}
+	}
+
+	/**
+	 * Makes the image of a tile
+	 *
+	 * @param configuration the configuration of the screen, or null
+	 * @return the image of the tile
+	 */
+	private static BufferedImage createImage(
+			GraphicsConfiguration configuration)
+	{
+		if (configuration == null)
+			return new BufferedImage(TILE_SIZE, TILE_SIZE,
+					BufferedImage.TYPE_INT_RGB);
+		return configuration.createCompatibleImage(TILE_SIZE, TILE_SIZE,
+				Transparency.OPAQUE);
+	}
+
+	/**
+	 * Draws the part of the layer a tile covers into the tile
+	 *
+	 * @param tile the tile
+	 * @param x the x coordinate of the tile in the layer
+	 * @param y the y coordinate of the tile in the layer
+	 */
+	private void drawTile(Tile tile, int x, int y)
+	{
+		Graphics g = tile.image.createGraphics();
+		g.translate(-x, -y);
+		g.setClip(x, y, TILE_SIZE, TILE_SIZE);
+		painter.paintLayer(g);
+		g.dispose();
+		tile.valid = true;
+	}
+
+	/**
+	 * Marks part of the layer as changed so its tiles are drawn again the next
+	 * time they are painted
+	 *
+	 * @param area the part of the layer that changed
+	 */
+	public void invalidate(Rectangle area)
+	{
+		int lastRow = (area.y + area.height - 1) / TILE_SIZE;
+		int lastCol = Math.min((area.x + area.width - 1) / TILE_SIZE,
+				tileCols - 1);
+		for (int row = Math.max(area.y / TILE_SIZE, 0); row <= lastRow; row++)
+			for (int col = Math.max(area.x / TILE_SIZE, 0); col <= lastCol; col++)
+			{
+				Tile tile = tiles.get(row * tileCols + col);
+				if (tile != null)
+					tile.valid = false;
+			}
+	}
+
+	/**
+	 * Marks the whole layer as changed
+	 */
+	public void invalidateAll()
+	{
+		for (Tile tile : tiles.values())
+			tile.valid = false;
+	}
+
+	/**
+	 * Painter - draws a layer into a Graphics context, only needing to draw
+	 * what is inside its clip
+	 */
+	public interface Painter
+	{
+		/**
+		 * Draws the layer
+		 *
+		 * @param g the Graphics context to draw the layer in
+		 */
+		void paintLayer(Graphics g);
+	}
+
+	/**
+	 * Tile - the image of one part of the layer and whether or not it still
+	 * matches the layer
+	 */
+	private static class Tile
+	{
+		/* Variables */
+		private BufferedImage image;
+		private boolean valid;
+
+		/**
+		 * Constructs a new Tile that has not been drawn yet
+		 *
+		 * @param image the image of the tile
+		 */
+		Tile(BufferedImage image)
+		{
+			this.image = image;
+		}
+	}
+}
@@ -3,13 +3,18 @@ import java.awt.*;
 import javax.swing.*;
 
 import java.awt.event.*;
-import java.io.File;
 import java.io.FileNotFoundException;
-import java.util.Scanner;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 /**
- * Level - the level panel that loads a level to be played from a ".op" file.
- * Also handles the manipulation of electricity and energies
+ * Level - the level panel that loads a level to be played from a ".op" or
+ * ".opb" file or the level pack.
+ * Shows and drives the simulation that handles the electricity and energies
  * 
  * @author Derrick Thai and Riddle Li
  * @version v6.2Final, Last Updated: June 16, 2014
@@ -21,29 +26,47 @@ public class Level extends JPanel implements MouseListener,
 	private static final long serialVersionUID = 1L;
 
 	/* Constants */
-	// Board Size
-	private final int SQUARE_SIZE = 60;
-	private final int NO_OF_ROWS = 10;
-	private final int NO_OF_COLS = 16;
-	private final int INVENTORY_COLS = 6;
-
-	public final Dimension BOARD_SIZE = new Dimension(NO_OF_COLS * SQUARE_SIZE,
-			NO_OF_ROWS * SQUARE_SIZE);
-
-	// Timer Intervals
-	private final int TIME_INTERVAL_LONG = 1000;
-	private final int TIME_INTERVAL_SHORT = 250;
+	// Board Size, read from the level file
+	private final int SQUARE_SIZE = Simulation.SQUARE_SIZE;
+	private final int NO_OF_ROWS;
+	private final int NO_OF_COLS;
+	private final int INVENTORY_COLS;
+
+	public final Dimension BOARD_SIZE;
+
+	// Position of the info box prompts from the left of the inventory and
+	// the size of the info box
+	private final int PROMPT_X = 57;
+	private final int PROMPT_Y = 297;
+
+	// How many times faster than real time the sped up clock runs
+	private final int SPEED_UP = 4;
+	private final int INFO_SIZE = 300;
+	private final Rectangle INFO_BOX;
+
+	// Loads the next level in the background while a level is played
+	private static final ExecutorService LOADER = Executors
+			.newSingleThreadExecutor(new ThreadFactory()
+			{
+				public Thread newThread(Runnable task)
+				{
+					Thread thread = new Thread(task, "Level Loader");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
 
 	/* Variables */
 	private int levelNo;
 	private boolean powerOn;
 
-	// Board and items
-	private Square[][] board;
+	// The simulation of the next level, being loaded in the background
+	private Future<Simulation> nextLevel;
+
+	// Simulation and items
+	private Simulation simulation;
 	private int noOfItems;
-	private int noOfWires;
 	private Item[] items;
-	private Wire[] wires;
 
 	// Hovered and selected item
 	Point lastPoint, firstPoint;
@@ -53,160 +76,173 @@ public class Level extends JPanel implements MouseListener,
 	private Item sourceItem;
 	private int selectedItemIndex;
 
-	// Timers
-	private Timer timerLong;
-	private Timer timerShort;
+	// Clock that steps the simulation
+	private SimulationClock clock;
 
 	// Images
 	Image imageBackground;
 	Image[] imagePrompt;
+	Image imageWire;
+
+	// The background, wires and items that are not being dragged, kept
+	// offscreen and only drawn again where they change
+	private LayerCache boardLayer;
+
+	// The light and water last shown and the part of the panel that needs
+	// to be repainted because it changed, or null
+	private BitBoard shownLight;
+	private BitBoard shownWater;
+	private Rectangle dirtyArea;
 
 	/**
 	 * Constructs a new Level object
 	 * 
+	 * @param levelNo the number of the level
 	 * @throws FileNotFoundException if a file is not found
 	 */
 	public Level(int levelNo) throws FileNotFoundException
+	{
+		// Load the simulation from the level pack or the level's own file
+		this(levelNo, new Simulation(Main.loadLevelFile(levelNo)));
+	}
+
+	/**
+	 * Constructs a new Level object for a simulation that was already loaded
+	 * 
+	 * @param levelNo the number of the level
+	 * @param simulation the simulation of the level's board
+	 */
+	public Level(int levelNo, Simulation simulation)
 	{
 		// Add the listeners
 		addKeyListener(this);
 		addMouseListener(this);
 		addMouseMotionListener(this);
 
-		// Panel preferences
-		setPreferredSize(BOARD_SIZE);
-		setFocusable(true);
-		requestFocusInWindow();
-
 		// Load the level
 		this.levelNo = levelNo;
 
-		// Load squares and objects
-		loadSquares();
+		// Load the objects that show the simulation
+		this.simulation = simulation;
+		NO_OF_ROWS = simulation.getNoOfRows();
+		NO_OF_COLS = simulation.getNoOfCols();
+		INVENTORY_COLS = simulation.getInventoryCols();
+		BOARD_SIZE = new Dimension(NO_OF_COLS * SQUARE_SIZE, NO_OF_ROWS
+				* SQUARE_SIZE);
+		INFO_BOX = new Rectangle((NO_OF_COLS - INVENTORY_COLS) * SQUARE_SIZE
+				+ PROMPT_X, PROMPT_Y, INFO_SIZE, INFO_SIZE);
+		shownLight = new BitBoard(NO_OF_ROWS, NO_OF_COLS);
+		shownWater = new BitBoard(NO_OF_ROWS, NO_OF_COLS);
 		loadObjects();
 
-		// Initialize timers
-		timerLong = new Timer(TIME_INTERVAL_LONG, new TimerEventHandler());
-		timerShort = new Timer(TIME_INTERVAL_SHORT, new TimerEventHandler());
+		// Panel preferences
+		setPreferredSize(BOARD_SIZE);
+		setFocusable(true);
+		requestFocusInWindow();
+
+		// Initialize the clock
+		clock = new SimulationClock(simulation, new TimerEventHandler());
 
 		// Initialize images
-		imageBackground = new ImageIcon("./images/levelBoard.png").getImage();
+		imageBackground = SpriteCache.getImage("levelBoard.png");
 		imagePrompt = new Image[2];
-		imagePrompt[0] = new ImageIcon("./images/startInfo.png").getImage();
-		imagePrompt[1] = new ImageIcon("./images/offInfo.png").getImage();
+		imagePrompt[0] = SpriteCache.getImage("startInfo.png");
+		imagePrompt[1] = SpriteCache.getImage("offInfo.png");
+		imageWire = SpriteCache.getImage("wire.png");
+		boardLayer = new LayerCache(BOARD_SIZE.width, BOARD_SIZE.height,
+				new BoardPainter());
 
 		turnOffPower();
-	}
-
-	/**
-	 * Initializes the square objects
-	 */
-	private void loadSquares()
-	{
-		board = new Square[NO_OF_ROWS][NO_OF_COLS];
 
-		for (int row = 0; row < board.length; row++)
-			for (int col = 0; col < board[row].length; col++)
-				board[row][col] = new Square(col * SQUARE_SIZE, row
-						* SQUARE_SIZE, SQUARE_SIZE);
+		// Get the next level ready while this one is played
+		nextLevel = prefetch(levelNo + 1);
 	}
 
 	/**
-	 * Loads the level from the file
+	 * Starts loading a level in the background: reading its board, making its
+	 * simulation and decoding the images of its items, so the level can be
+	 * shown as soon as it is needed
 	 * 
-	 * @throws FileNotFoundException if the file is not found
+	 * @param levelNo the number of the level
+	 * @return the simulation of the level, once it is loaded
 	 */
-	private void loadObjects() throws FileNotFoundException
+	private static Future<Simulation> prefetch(final int levelNo)
 	{
-		// Load the file and read the number of items and wires
-		Scanner inFile = new Scanner(new File("./levels/level" + levelNo
-				+ ".op"));
-		noOfItems = inFile.nextInt();
-		inFile.nextLine();
-		noOfWires = inFile.nextInt();
-		inFile.nextLine();
-
-		// Add the item objects
-		items = new Item[noOfItems];
-		wires = new Wire[noOfWires];
-		int itemNo = 0;
-		int wireNo = 0;
-
-		// Add each item to the board
-		for (int row = 0; row < NO_OF_ROWS; row++)
-			for (int col = 0; col < NO_OF_COLS; col++)
+		return LOADER.submit(new Callable<Simulation>()
+		{
+			public Simulation call() throws FileNotFoundException
 			{
-				// Store the next String
-				String readStr = inFile.next();
-
-				// If the string is not a letter there must be an item
-				if (!Level.isLetter(readStr))
+				Simulation simulation = new Simulation(
+						Main.loadLevelFile(levelNo));
+				for (int item = 0; item < simulation.getNoOfItems(); item++)
 				{
-					// If the number is negative, there is a wire (check
-					// the character because -0 is a possibility)
-					if (readStr.charAt(0) == '-')
-					{
-						// Add the wire
-						wires[wireNo++] = new Wire(col * SQUARE_SIZE, row
-								* SQUARE_SIZE, this);
-						board[row][col].addWire();
-					}
-
-					// Use the positive value of the integer to decide
-					// the item type and add that item
-					int readInt = Math.abs(Integer.parseInt(readStr));
-
-					items[itemNo] = new Item(col * SQUARE_SIZE, row
-							* SQUARE_SIZE, readInt, this);
-
-					// Lock the item if it is not on the inventory
-					if (items[itemNo].x < (NO_OF_COLS - INVENTORY_COLS)
-							* SQUARE_SIZE)
-						items[itemNo].lock();
-
-					// Remember the source item
-					if (readInt == Item.SOURCE)
-						sourceItem = items[itemNo];
-
-					board[row][col].addItem(itemNo++);
-
+					int itemType = simulation.getItemType(item);
+					SpriteCache.getImage(Item.OFF_FILE_NAMES[itemType]);
+					SpriteCache.getImage(Item.ON_FILE_NAMES[itemType]);
+					SpriteCache.getImage(Item.INFO_FILE_NAMES[itemType]);
 				}
-				// If the string is a letter then there is no item
-				else
-				{
-					char readCh = readStr.charAt(0);
-
-					// 'X' is an disabled square
-					if (readCh == 'X')
-						board[row][col].disable();
-					// 'W' is a wire by itself
-					else if (readCh == 'W')
-					{
-						wires[wireNo++] = new Wire(col * SQUARE_SIZE, row
-								* SQUARE_SIZE, this);
-						board[row][col].addWire();
-					}
-					// 'O' is for a completely empty square but no code
-				}
-
+				return simulation;
 			}
-		inFile.close();
+		});
 	}
 
 	/**
-	 * Determines if the given String from the file is a letter
+	 * Gives access to the simulation of the next level, waiting for it if it
+	 * is still being loaded
 	 * 
-	 * @param str the string to be checked
-	 * @return Whether or not the given String is a letter
+	 * @return the simulation of the next level
+	 * @throws FileNotFoundException if the next level is not found
 	 */
-	public static boolean isLetter(String str)
+	private Simulation getNextLevel() throws FileNotFoundException
 	{
-		// Look at all positions since we may be looking at a negative number
-		// that has more than one character (because of the negative sign)
-		for (int pos = 0; pos < str.length(); pos++)
-			if (Character.isLetter(str.charAt(pos)))
-				return true;
-		return false;
+		try
+		{
+			return nextLevel.get();
+		}
+		catch (ExecutionException e)
+		{
+			// Throw what went wrong while loading it
+			Throwable cause = e.getCause();
+			if (cause instanceof FileNotFoundException)
+				throw (FileNotFoundException) cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new IllegalStateException(cause);
+		}
+		catch (InterruptedException e)
+		{
+			// Load it here instead
+			Thread.currentThread().interrupt();
+			return new Simulation(Main.loadLevelFile(levelNo + 1));
+		}
+	}
+
+	/**
+	 * Creates the item objects that show the simulation's board. The wires
+	 * never move, so they are drawn straight from the simulation
+	 */
+	private void loadObjects()
+	{
+		noOfItems = simulation.getNoOfItems();
+		items = new Item[noOfItems];
+
+		// Add each item where the simulation has it
+		for (int item = 0; item < noOfItems; item++)
+		{
+			items[item] = new Item(simulation.getItemCol(item) * SQUARE_SIZE,
+					simulation.getItemRow(item) * SQUARE_SIZE,
+					simulation.getItemType(item), this);
+
+			// Lock the item if it is not on the inventory
+			if (simulation.isItemLocked(item))
+				items[item].lock();
+
+			// Remember the source item
+			if (simulation.getItemType(item) == Item.SOURCE)
+				sourceItem = items[item];
+		}
 	}
 
 	/**
@@ -232,378 +268,147 @@ public class Level extends JPanel implements MouseListener,
 	}
 
 	/**
-	 * Turns on the different types of energies such as light and radio
-	 * according to the energy providing items Also turns the items on if there
-	 * is electricity
+	 * Updates the states and positions of the items to match the simulation,
+	 * marking where the board layer changed
 	 */
-	private void turnOnEnergy()
+	private void syncItems()
 	{
-		// Checks every square object on the game board for placed items
-		for (int row = 0; row < NO_OF_ROWS; row++)
-			for (int col = 0; col < NO_OF_COLS - INVENTORY_COLS; col++)
-				if (board[row][col].getItemIndex() > Square.EMPTY)
-					// Checks whether or not each square has electricity
-					// then checks the type of item occupying each square
-					if (board[row][col].returnEnergyState(Square.ELECTRICITY) == true)
-					{
-						// For light bulbs, turn it on and transmit light
-						if (items[board[row][col].getItemIndex()].getItemType() == Item.LIGHT_BULB)
-						{
-							if (items[board[row][col].getItemIndex()]
-									.getState() == Item.STATE_OFF)
-								items[board[row][col].getItemIndex()]
-										.switchState();
-							transmitEnergy(Square.LIGHT, row, col);
-						}
-						// For solar panels, turn them on
-						else if (items[board[row][col].getItemIndex()]
-								.getItemType() == Item.SOLAR_PANEL)
-						{
-							if (items[board[row][col].getItemIndex()]
-									.getState() == Item.STATE_OFF)
-								items[board[row][col].getItemIndex()]
-										.switchState();
-						}
-						// For Radio Senders, turn them on and transmit the
-						// radio waves
-						else if (items[board[row][col].getItemIndex()]
-								.getItemType() == Item.RADIO)
-						{
-							if (items[board[row][col].getItemIndex()]
-									.getState() == Item.STATE_OFF)
-								items[board[row][col].getItemIndex()]
-										.switchState();
-							transmitEnergy(Square.RADIO, row, col);
-						}
-						// For Radio Dishes, turn them on
-						else if (items[board[row][col].getItemIndex()]
-								.getItemType() == Item.DISH)
-						{
-							if (items[board[row][col].getItemIndex()]
-									.getState() == Item.STATE_OFF)
-								items[board[row][col].getItemIndex()]
-										.switchState();
-						}
-						// For Teleport Senders, turn them on and teleport any
-						// items above it
-						else if (items[board[row][col].getItemIndex()]
-								.getItemType() == Item.TSENDER)
-						{
-							if (items[board[row][col].getItemIndex()]
-									.getState() == Item.STATE_OFF)
-
-								items[board[row][col].getItemIndex()]
-										.switchState();
-							teleport(row, col);
-						}
-						// For Teleport Receiver, turn them on
-						else if (items[board[row][col].getItemIndex()]
-								.getItemType() == Item.TRECEIVER)
-						{
-							if (items[board[row][col].getItemIndex()]
-									.getState() == Item.STATE_OFF)
-								items[board[row][col].getItemIndex()]
-										.switchState();
-						}
-						// For Kettles, turn them on and allow water to flow
-						// from them
-						else if (items[board[row][col].getItemIndex()]
-								.getItemType() == Item.KETTLE)
-						{
-							if (items[board[row][col].getItemIndex()]
-									.getState() == Item.STATE_OFF)
-								items[board[row][col].getItemIndex()]
-										.switchState();
-							transmitEnergy(Square.WATER, row, col);
-						}
-						// For Turbines, turn them on
-						else if (items[board[row][col].getItemIndex()]
-								.getItemType() == Item.TURBINE)
-						{
-							if (items[board[row][col].getItemIndex()]
-									.getState() == Item.STATE_OFF)
-								items[board[row][col].getItemIndex()]
-										.switchState();
-						}
-						// For the Target, turn it on
-						else if (items[board[row][col].getItemIndex()]
-								.getItemType() == Item.TARGET)
-						{
-							if (items[board[row][col].getItemIndex()]
-									.getState() == Item.STATE_OFF)
-								items[board[row][col].getItemIndex()]
-										.switchState();
-						}
-					}
-		repaint();
+		for (int item = 0; item < noOfItems; item++)
+		{
+			int x = simulation.getItemCol(item) * SQUARE_SIZE;
+			int y = simulation.getItemRow(item) * SQUARE_SIZE;
+			if (items[item].getState() == simulation.getItemState(item)
+					&& items[item].x == x && items[item].y == y)
+				continue;
+
+			// Redraw the item where it was and where it is now
+			boardLayer.invalidate(items[item]);
+			markDirty(items[item]);
+			if (items[item].getState() != simulation.getItemState(item))
+				items[item].switchState();
+			items[item].setLocation(x, y);
+			boardLayer.invalidate(items[item]);
+			markDirty(items[item]);
+		}
+		markEnergyChanges(simulation.getEnergyLayer(Square.LIGHT), shownLight);
+		markEnergyChanges(simulation.getEnergyLayer(Square.WATER), shownWater);
 	}
 
 	/**
-	 * Transform the energies occupying squares back to electricity if the right
-	 * item and its corresponding energy are present
+	 * Marks the squares whose energy changed since it was last shown as
+	 * needing to be repainted, a word of squares at a time
+	 * 
+	 * @param energies the squares with the energy now
+	 * @param shown the squares with the energy when it was last shown
 	 */
-	private void energyToElectricity()
+	private void markEnergyChanges(BitBoard energies, BitBoard shown)
 	{
-		// Checks each square on the game board for items and energies
 		for (int row = 0; row < NO_OF_ROWS; row++)
-			for (int col = 0; col < NO_OF_COLS - INVENTORY_COLS; col++)
-				if (board[row][col].getItemIndex() > Square.EMPTY)
-				{
-					// Solar Panel: converts light into electricity
-					if (items[board[row][col].getItemIndex()].getItemType() == Item.SOLAR_PANEL
-							&& board[row][col].returnEnergyState(Square.LIGHT) == true)
-						board[row][col].turnOnEnergy(Square.ELECTRICITY);
-
-					// Dish: converts radio into electricity
-					else if (items[board[row][col].getItemIndex()]
-							.getItemType() == Item.DISH
-							&& board[row][col].returnEnergyState(Square.RADIO) == true)
-						board[row][col].turnOnEnergy(Square.ELECTRICITY);
-
-					// Turbines: converts water into electricity
-					else if (items[board[row][col].getItemIndex()]
-							.getItemType() == Item.TURBINE
-							&& board[row][col].returnEnergyState(Square.WATER) == true)
-						board[row][col].turnOnEnergy(Square.ELECTRICITY);
-
-				}
+			for (int word = 0; word < energies.getWordsPerRow(); word++)
+			{
+				long now = energies.getWord(row, word);
+				long changedBits = now ^ shown.getWord(row, word);
+				if (changedBits == 0)
+					continue;
+				shown.setBits(row, word, changedBits & now);
+				shown.clearBits(row, word, changedBits & ~now);
+
+				int fromCol = word * BitBoard.WORD_SIZE
+						+ Long.numberOfTrailingZeros(changedBits);
+				int toCol = (word + 1) * BitBoard.WORD_SIZE
+						- Long.numberOfLeadingZeros(changedBits);
+				markDirty(new Rectangle(fromCol * SQUARE_SIZE, row
+						* SQUARE_SIZE, (toCol - fromCol) * SQUARE_SIZE,
+						SQUARE_SIZE));
+			}
 	}
 
 	/**
-	 * Transmits a certain energy across squares according to the given energy
-	 * to be transmitted Each energy type has a different transmission behaviour
-	 * (i.e. water transmits downwards only)
+	 * Adds part of the panel to the area that needs to be repainted
 	 * 
-	 * @param energyType the type of energy to be transmitted
-	 * @param row the row at which the transmission starts
-	 * @param col the column at which the transmission starts
+	 * @param area the part of the panel that changed
 	 */
-	private void transmitEnergy(int energyType, int row, int col)
+	private void markDirty(Rectangle area)
 	{
-		// LIGHT
-		if (energyType == Square.LIGHT)
-		{
-			// All items block light except for solar panels. If light is
-			// blocked, stop the transmission
-			boolean blocked = false;
-			// Transmit light upwards from the light bulb
-			for (int rowUp = row - 1; rowUp >= 0; rowUp--)
-			{
-				if (blocked == false
-						&& board[rowUp][col].getItemIndex() > Square.EMPTY
-						&& items[board[rowUp][col].getItemIndex()]
-								.getItemType() != Item.SOLAR_PANEL)
-					blocked = true;
-
-				if (!blocked)
-					board[rowUp][col].turnOnEnergy(energyType);
-			}
-			// Transmit light downwards from the light bulb
-			blocked = false;
-			for (int rowDown = row + 1; rowDown < NO_OF_ROWS; rowDown++)
-			{
-				if (blocked == false
-						&& board[rowDown][col].getItemIndex() > Square.EMPTY
-						&& items[board[rowDown][col].getItemIndex()]
-								.getItemType() != Item.SOLAR_PANEL)
-
-					blocked = true;
-
-				if (!blocked)
-					board[rowDown][col].turnOnEnergy(energyType);
-			}
-			// Transmit light left from the light bulb
-			blocked = false;
-			for (int colLeft = col - 1; colLeft >= 0; colLeft--)
-			{
-				if (blocked == false
-						&& board[row][colLeft].getItemIndex() > Square.EMPTY
-						&& items[board[row][colLeft].getItemIndex()]
-								.getItemType() != Item.SOLAR_PANEL)
-					blocked = true;
-
-				if (!blocked)
-					board[row][colLeft].turnOnEnergy(energyType);
-			}
-			// Transmit light right from the light bulb
-			blocked = false;
-			for (int colRight = col + 1; colRight < NO_OF_COLS - INVENTORY_COLS; colRight++)
-			{
-				if (blocked == false
-						&& board[row][colRight].getItemIndex() > Square.EMPTY
-						&& items[board[row][colRight].getItemIndex()]
-								.getItemType() != Item.SOLAR_PANEL)
-					blocked = true;
-
-				if (!blocked)
-					board[row][colRight].turnOnEnergy(energyType);
-			}
-		}
-		// RADIO WAVES
-		else if (energyType == Square.RADIO)
-		{
-			// Turn on the radio energy for all squares in a 5x5 range centered
-			// at the radio transmitter
-			for (int rowIndex = row - 2; rowIndex <= row + 2; rowIndex++)
-				for (int colIndex = col - 2; colIndex <= col + 2; colIndex++)
-					if (rowIndex < NO_OF_ROWS && rowIndex >= 0
-							&& colIndex < NO_OF_COLS - INVENTORY_COLS
-							&& colIndex >= 0)
-						board[rowIndex][colIndex].turnOnEnergy(Square.RADIO);
-		}
-		// WATER
-		else if (energyType == Square.WATER)
-		{
-			// All items except the turbine blocks water. Stop the transmission
-			// if water is blocked
-			boolean blocked = false;
-			// Transmit water downwards from the kettle
-			for (int rowIndex = row + 1; rowIndex < NO_OF_ROWS; rowIndex++)
-			{
-				if (blocked == false && board[rowIndex][col].getItemIndex() > Square.EMPTY
-						&& items[board[rowIndex][col].getItemIndex()]
-								.getItemType() != Item.TURBINE
-						)
-					blocked = true;
-				if (!blocked)
-					board[rowIndex][col].turnOnEnergy(Square.WATER);
-			}
-		}
-
+		if (dirtyArea == null)
+			dirtyArea = new Rectangle(area);
+		else
+			dirtyArea.add(area);
 	}
 
 	/**
-	 * Spreads electricity to all the squares connected by wires. Spreads from a
-	 * square that already has electricity
+	 * Repaints only the area that changed since the last repaint
 	 */
-	private void conductWires()
+	private void repaintDirty()
 	{
-		// Go through each wire and conduct the wires adjacent
-		for (Wire wire : wires)
-		{
-			int row = yCoordToRow(wire.y);
-			int col = xCoordToCol(wire.x);
-			// Transmit electricity if power is on
-			if (board[row][col].returnEnergyState(Square.ELECTRICITY))
-			{
-				// Down
-				if (row + 1 < NO_OF_ROWS && board[row + 1][col].hasWire())
-					board[row + 1][col].turnOnEnergy(Square.ELECTRICITY);
-				// Up
-				if (row - 1 >= 0 && board[row - 1][col].hasWire())
-					board[row - 1][col].turnOnEnergy(Square.ELECTRICITY);
-				// Right
-				if (col + 1 < NO_OF_COLS - INVENTORY_COLS
-						&& board[row][col + 1].hasWire())
-					board[row][col + 1].turnOnEnergy(Square.ELECTRICITY);
-				// Left
-				if (col - 1 >= 0 && board[row][col - 1].hasWire())
-					board[row][col - 1].turnOnEnergy(Square.ELECTRICITY);
-			}
-		}
+		if (dirtyArea != null)
+			repaint(dirtyArea);
+		dirtyArea = null;
 	}
 
 	/**
-	 * Teleports the item above the Teleport Sender to the Teleport Receiver if
-	 * possible
-	 * 
-	 * @param row the row location of the Teleport Sender
-	 * @param col the column location of the Teleport Sender
+	 * Turns on the power starting at the source
 	 */
-	private void teleport(int row, int col)
+	private void turnOnPower()
 	{
-		// Variable determining if the teleportation is possible
-		boolean isSwitchPossible = false;
-		// Variable storing the index of the item to be teleported
-		int itemStoreIndex = -1;
-		// The coordinates of the Teleport Receiver
-		int rowStore = -1, colStore = -1;
-
-		// Only teleport if there is an object to be teleported. Store the index
-		// of the item to be teleported
-		if (row - 1 >= 0 && board[row - 1][col].getItemIndex() > Square.EMPTY)
-		{
-			itemStoreIndex = board[row - 1][col].getItemIndex();
-			// Checks if the area above the Teleport Receiver is empty, then
-			// stores its location
-			for (int rowReceive = 1; isSwitchPossible == false
-					&& rowReceive < NO_OF_ROWS; rowReceive++)
-				for (int colReceive = 0; colReceive < NO_OF_COLS
-						- INVENTORY_COLS; colReceive++)
-					if (board[rowReceive][colReceive].getItemIndex() > Square.EMPTY)
-						if (items[board[rowReceive][colReceive].getItemIndex()]
-								.getItemType() == Item.TRECEIVER
-								&& items[board[rowReceive][colReceive]
-										.getItemIndex()].getState() == Item.STATE_ON)
-							if (board[rowReceive - 1][colReceive]
-									.getItemIndex() == Square.EMPTY)
-							{
-								isSwitchPossible = true;
-								rowStore = rowReceive - 1;
-								colStore = colReceive;
-							}
-		}
+		powerOn = true;
+		simulation.turnOnPower();
+		syncItems();
 
-		if (isSwitchPossible == true)
-		{
-			// Remove the item from the previous position, then redraw it in the
-			// new position
-			board[row - 1][col].removeItem();
+		// Start the clock and show the new prompt
+		clock.start();
+		markDirty(INFO_BOX);
+		repaintDirty();
+	}
 
-			Point initialPoint = new Point(col * SQUARE_SIZE, (row - 1)
-					* SQUARE_SIZE);
-			Point newPoint = new Point(colStore * SQUARE_SIZE, rowStore
-					* SQUARE_SIZE);
+	/**
+	 * Shuts down all power on the board
+	 */
+	private void turnOffPower()
+	{
+		powerOn = false;
+		simulation.turnOffPower();
+		syncItems();
 
-			items[itemStoreIndex].move(initialPoint, newPoint);
-			board[rowStore][colStore].addItem(itemStoreIndex);
-		}
+		// Stop the clock and show the new prompt
+		clock.stop();
+		markDirty(INFO_BOX);
+		repaintDirty();
 	}
 
 	/**
-	 * Turns on the power starting at the source
+	 * Runs the simulation straight to where the power settles and shows the
+	 * result without waiting for the clock. A board whose teleports keep it
+	 * changing carries on with the clock from there
 	 */
-	private void turnOnPower()
+	private void fastForward()
 	{
 		powerOn = true;
+		int steps = simulation.runToFixpoint();
+		syncItems();
 
-		// Give electricity to the source
-		for (int item = 0; item < items.length; item++)
-			if (items[item].getItemType() == Item.SOURCE)
-			{
-				if (items[item].getState() == Item.STATE_OFF)
-					items[item].switchState();
-				board[yCoordToRow(items[item].y)][xCoordToCol(items[item].x)].energyState[Square.ELECTRICITY] = true;
-			}
-
-		// Start timers
-		timerLong.start();
-		timerShort.start();
-		repaint();
+		// Only keep the clock going if the board has not settled
+		if (steps == -1 || simulation.getPeriod() > 0)
+			clock.start();
+		else
+			clock.stop();
+		markDirty(INFO_BOX);
+		repaintDirty();
+		checkForWin();
 	}
 
 	/**
-	 * Shuts down all power on the board
+	 * Changes how fast the clock runs, going from real time to sped up, then
+	 * to as fast as the board can be shown, then back to real time
 	 */
-	private void turnOffPower()
+	private void changeSpeed()
 	{
-		powerOn = false;
-
-		// No energy
-		for (int row = 0; row < board.length; row++)
-			for (int col = 0; col < board[row].length; col++)
-				for (int state = 0; state < Square.NO_OF_STATES; state++)
-					board[row][col].energyState[state] = false;
-
-		// All items in off states
-		for (Item item : items)
-			if (item.getState() == Item.STATE_ON)
-				item.switchState();
-
-		// Stop timers
-		timerLong.stop();
-		timerShort.stop();
-		repaint();
+		if (clock.getMode() == SimulationClock.REALTIME)
+			clock.setMode(SimulationClock.ACCELERATED, SPEED_UP);
+		else if (clock.getMode() == SimulationClock.ACCELERATED)
+			clock.setMode(SimulationClock.UNTHROTTLED, 1);
+		else
+			clock.setMode(SimulationClock.REALTIME, 1);
 	}
 
 	/**
@@ -612,58 +417,50 @@ public class Level extends JPanel implements MouseListener,
 	private void checkForWin()
 	{
 		// Check for winner by seeing if target is powered
-		for (int item = 0; item < items.length; item++)
-			if (items[item].getItemType() == Item.TARGET)
-				if (board[yCoordToRow(items[item].y)][xCoordToCol(items[item].x)].energyState[0] == true)
-				{
-					// Congratulation Message
-					JOptionPane.showMessageDialog(this,
-							"Congratulations, level " + levelNo + " complete!");
+		if (simulation.isWon())
+		{
+			// Congratulation Message
+			JOptionPane.showMessageDialog(this, "Congratulations, level "
+					+ levelNo + " complete!");
 
-					turnOffPower();
+			turnOffPower();
+
+			// Find the frame, however deep in it this level panel is
+			Main main = (Main) SwingUtilities.getAncestorOfClass(Main.class,
+					this);
 
-					// Remove this level panel from the frame
-					Container main = getParent();
-					main.remove(Level.this);
-
-					// Decide next action
-					// If finished last level:
-					if (levelNo + 1 > Main.noOfLevels)
-					{
-						// Show winning message
-						JOptionPane
-								.showMessageDialog(
-										this,
-										"You have beat all of the levels! Now go to the Editor and make some levels of your own.");
-
-						// Bring user to the editor
-						Main.levelEditor = new LevelEditor();
-						main.add(Main.levelEditor);
-						Main.state = 1;
-
-						main.revalidate();
-						repaint();
-						return;
-					}
-					// More levels to go:
-					else
-					{
-						// Try to load the next level
-						try
-						{
-							Main.level = new Level(levelNo + 1);
-							main.add(Main.level);
-
-							main.revalidate();
-							repaint();
-							return;
-						}
-						catch (FileNotFoundException e)
-						{
-							e.printStackTrace();
-						}
-					}
+			// Decide next action
+			// If finished last level:
+			Main.checkNoOfLevels();
+			if (levelNo + 1 > Main.noOfLevels)
+			{
+				// Show winning message
+				JOptionPane
+						.showMessageDialog(
+								this,
+								"You have beat all of the levels! Now go to the Editor and make some levels of your own.");
+
+				// Bring user to the editor
+				Main.levelEditor = new LevelEditor();
+				main.replaceBoardPane(Main.levelEditor);
+				Main.state = 1;
+			}
+			// More levels to go:
+			else
+			{
+				// Try to load the next level
+				try
+				{
+					Main.level = new Level(levelNo + 1, getNextLevel());
+					main.replaceBoardPane(Main.level);
+					Main.level.requestFocus();
+				}
+				catch (FileNotFoundException e)
+				{
+					e.printStackTrace();
 				}
+			}
+		}
 	}
 
 	/**
@@ -673,31 +470,30 @@ public class Level extends JPanel implements MouseListener,
 	 */
 	public void paintComponent(Graphics g)
 	{
-		super.paintComponent(g);
-		// Draw the background
-		g.drawImage(imageBackground, 0, 0, this);
+		// Copy the background, wires and items from the board layer
+		boardLayer.paint(g, getGraphicsConfiguration());
 
 		// Default info box prompts
+		int promptX = (NO_OF_COLS - INVENTORY_COLS) * SQUARE_SIZE + PROMPT_X;
 		if (!powerOn)
-			g.drawImage(imagePrompt[0], 657, 297, this);
+			g.drawImage(imagePrompt[0], promptX, PROMPT_Y, this);
 		else
-			g.drawImage(imagePrompt[1], 657, 297, this);
-
-		// Draw the items and wires on the board
-		for (Wire wire : wires)
-			wire.draw(g);
-		for (Item item : items)
-			item.draw(g);
+			g.drawImage(imagePrompt[1], promptX, PROMPT_Y, this);
 
 		// Draw the selected item last so it appears on top
 		if (selectedItem != null)
-			items[selectedItemIndex].draw(g);
+			selectedItem.drawSprite(g);
 
-		// Draw the energies of the Squares
+		// Draw the energies of the squares that need painting straight from
+		// the simulation's energy layers
 		if (powerOn)
-			for (int row = 0; row < NO_OF_ROWS; row++)
-				for (int col = 0; col < NO_OF_COLS - INVENTORY_COLS; col++)
-					board[row][col].draw(g);
+			Square.drawEnergies(g, simulation.getEnergyLayer(Square.LIGHT),
+					simulation.getEnergyLayer(Square.WATER), NO_OF_COLS
+							- INVENTORY_COLS, SQUARE_SIZE);
+
+		// Show the info of the item being hovered in the info box
+		if (hoveredItem != null)
+			hoveredItem.drawInfo(g, promptX, PROMPT_Y);
 	}
 
 	/* Listeners */
@@ -716,10 +512,16 @@ public class Level extends JPanel implements MouseListener,
 				turnOnPower();
 			else
 				turnOffPower();
-
-			repaint();
 			return;
 		}
+
+		// F skips ahead to where the power settles
+		if (event.getKeyCode() == KeyEvent.VK_F)
+			fastForward();
+
+		// S changes the speed of the clock
+		if (event.getKeyCode() == KeyEvent.VK_S)
+			changeSpeed();
 	}
 
 	// Mouse events
@@ -743,41 +545,61 @@ public class Level extends JPanel implements MouseListener,
 					turnOnPower();
 				else
 					turnOffPower();
-
-				repaint();
 				return;
 			}
 		}
 		// Other items
 		else
 		{
-			// Check if point clicked contains an item
-			for (int i = 0; i < noOfItems; i++)
-				if (items[i].contains(selectedPoint) && !items[i].isLocked()
-						&& !powerOn)
-				{
-					// Left mouse button
-					if (event.getButton() == MouseEvent.BUTTON1)
-					{
-						// Store the selected item
-						selectedItem = items[i];
-						selectedItemIndex = i;
-
-						// Store the point where this item came from
-						firstPoint = selectedPoint;
-						lastPoint = selectedPoint;
-
-						// Remove the item from the square
-						board[yCoordToRow(selectedPoint.y)][xCoordToCol(selectedPoint.x)]
-								.removeItem();
-
-					}
-					repaint();
-					return;
-				}
+			// Check if point clicked contains an item that can be moved
+			int i = powerOn ? -1 : findItem(selectedPoint, true);
+			if (i != -1 && event.getButton() == MouseEvent.BUTTON1)
+			{
+				// Store the selected item
+				selectedItem = items[i];
+				selectedItemIndex = i;
+
+				// Store the point where this item came from
+				firstPoint = selectedPoint;
+				lastPoint = selectedPoint;
+
+				// Remove the item from the square and the board layer
+				simulation.removeItem(i);
+				boardLayer.invalidate(selectedItem);
+				repaint(selectedItem);
+			}
 		}
 	}
 
+	/**
+	 * Finds the item under a point from the squares around it instead of
+	 * checking every item. Item images can spill into the squares right of
+	 * and below their own, so the squares above and left of the point are
+	 * checked too
+	 * 
+	 * @param point the point to check
+	 * @param unlockedOnly whether or not locked items are skipped
+	 * @return the index of the first item containing the point, or -1
+	 */
+	private int findItem(Point point, boolean unlockedOnly)
+	{
+		int found = -1;
+		int pointRow = yCoordToRow(point.y);
+		int pointCol = xCoordToCol(point.x);
+		for (int row = Math.max(pointRow - 1, 0); row <= pointRow
+				&& row < NO_OF_ROWS; row++)
+			for (int col = Math.max(pointCol - 1, 0); col <= pointCol
+					&& col < NO_OF_COLS; col++)
+			{
+				int itemIndex = simulation.getItemIndex(row, col);
+				if (itemIndex >= 0 && (found == -1 || itemIndex < found)
+						&& items[itemIndex].contains(point)
+						&& !(unlockedOnly && items[itemIndex].isLocked()))
+					found = itemIndex;
+			}
+		return found;
+	}
+
 	/**
 	 * Handles mouse movements
 	 * 
@@ -794,45 +616,49 @@ public class Level extends JPanel implements MouseListener,
 
 			// Get what item is being hovered and update the item info
 			// bar to match the item being hovered
-			if (hoveredItem != null)
-				hoveredItem.notHovered();
-			hoveredItem = sourceItem;
-			hoveredItem.hovered();
-
-			repaint();
+			hover(sourceItem);
 			return;
 		}
 		// Other items
 		else if (!powerOn)
 		{
-			for (int i = 0; i < noOfItems; i++)
-				if (items[i].contains(currentPoint))
-				{
-					// Set the cursor to the hand if we are on an item
-					if (!items[i].isLocked())
-						setCursor(Cursor
-								.getPredefinedCursor(Cursor.HAND_CURSOR));
-
-					// Get what item is being hovered and update the item info
-					// bar to match the item being hovered
-					if (hoveredItem != null)
-						hoveredItem.notHovered();
-					hoveredItem = items[i];
-					hoveredItem.hovered();
-
-					repaint();
-					return;
-				}
+			int i = findItem(currentPoint, false);
+			if (i != -1)
+			{
+				// Set the cursor to the hand if we are on an item
+				if (!items[i].isLocked())
+					setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
+
+				// Get what item is being hovered and update the item info
+				// bar to match the item being hovered
+				hover(items[i]);
+				return;
+			}
 		}
 
 		// Otherwise we just use the default cursor
 		setCursor(Cursor.getDefaultCursor());
 
 		// No item is hovered
+		hover(null);
+	}
+
+	/**
+	 * Changes the item being hovered, repainting the info box only if it
+	 * changed
+	 * 
+	 * @param item the item being hovered, or null
+	 */
+	private void hover(Item item)
+	{
+		if (item == hoveredItem)
+			return;
 		if (hoveredItem != null)
 			hoveredItem.notHovered();
-		hoveredItem = null;
-		repaint();
+		hoveredItem = item;
+		if (hoveredItem != null)
+			hoveredItem.hovered();
+		repaint(INFO_BOX);
 	}
 
 	/**
@@ -844,12 +670,15 @@ public class Level extends JPanel implements MouseListener,
 	{
 		Point currentPoint = event.getPoint();
 
-		// Update the selected item with the mouse position
+		// Update the selected item with the mouse position, repainting where
+		// it was and where it is now
 		if (selectedItem != null)
 		{
+			markDirty(selectedItem);
 			selectedItem.move(lastPoint, currentPoint);
 			lastPoint = currentPoint;
-			repaint();
+			markDirty(selectedItem);
+			repaintDirty();
 		}
 	}
 
@@ -863,6 +692,8 @@ public class Level extends JPanel implements MouseListener,
 		// Released an item
 		if (selectedItem != null)
 		{
+			markDirty(selectedItem);
+
 			// Use item coordinates instead of mouse since we want the item to
 			// snap to its closest square and not snap to the closest square to
 			// the mouse
@@ -874,28 +705,33 @@ public class Level extends JPanel implements MouseListener,
 			int squareRow = yCoordToRow(itemY);
 
 			// Out of board or on another piece
-			if (itemX > NO_OF_COLS * SQUARE_SIZE
-					|| itemY > NO_OF_ROWS * SQUARE_SIZE || itemX < 0
+			if (itemX >= NO_OF_COLS * SQUARE_SIZE
+					|| itemY >= NO_OF_ROWS * SQUARE_SIZE || itemX < 0
 					|| itemY < 0
-					|| board[squareRow][squareCol].getItemIndex() != -1)
+					|| simulation.getItemIndex(squareRow, squareCol) != Square.EMPTY)
 			{
 				// Return the item to where it came from
 				selectedItem.move(lastPoint, firstPoint);
-				board[yCoordToRow(firstPoint.y)][xCoordToCol(firstPoint.x)]
-						.addItem(selectedItemIndex);
+				simulation.placeItem(selectedItemIndex,
+						simulation.getItemRow(selectedItemIndex),
+						simulation.getItemCol(selectedItemIndex));
 			}
 			// Valid move
 			else
 			{
 				// Adjust the new position and add the item to the square
 				selectedItem.snapToSquare(itemX, itemY, SQUARE_SIZE);
-				board[yCoordToRow(selectedItem.y)][xCoordToCol(selectedItem.x)]
-						.addItem(selectedItemIndex);
+				simulation.placeItem(selectedItemIndex,
+						yCoordToRow(selectedItem.y),
+						xCoordToCol(selectedItem.x));
 			}
 
+			// The item is back in the board layer
+			boardLayer.invalidate(selectedItem);
+			markDirty(selectedItem);
 			selectedItem = null;
 			selectedItemIndex = -1;
-			repaint();
+			repaintDirty();
 		}
 	}
 
@@ -921,7 +757,7 @@ public class Level extends JPanel implements MouseListener,
 	}
 
 	/**
-	 * TimerEventHandler - an inner class that handles the timer events
+	 * TimerEventHandler - an inner class that handles the clock's step events
 	 * 
 	 * @author Derrick Thai and Riddle Li
 	 * @version v6.2Final, Last Updated: June 16, 2014
@@ -930,25 +766,68 @@ public class Level extends JPanel implements MouseListener,
 	{
 
 		/**
-		 * Progressively sends power around the grid by activating items and
-		 * conducting electricity
+		 * Shows the board after the clock has conducted electricity and
+		 * activated items for another step
 		 * 
-		 * @param event the Timer event
+		 * @param event the clock's step event
 		 */
 		public void actionPerformed(ActionEvent event)
 		{
-			// Less frequent checks
-			if (event.getSource() == timerLong)
-			{
-				turnOnEnergy();
-				energyToElectricity();
-				checkForWin();
-			}
-			// More frequently conduct wires
+			syncItems();
+			repaintDirty();
+			checkForWin();
+		}
+	}
+
+	/**
+	 * BoardPainter - an inner class that draws the board layer: the
+	 * background and the wires and items on each square
+	 */
+	private class BoardPainter implements LayerCache.Painter
+	{
+
+		/**
+		 * Draws the part of the board layer inside the clip
+		 * 
+		 * @param g the Graphics context to draw the layer in
+		 */
+		public void paintLayer(Graphics g)
+		{
+			Rectangle clip = g.getClipBounds();
+			g.setColor(getBackground());
+			g.fillRect(clip.x, clip.y, clip.width, clip.height);
+
+			// Draw the background. Only the default board size has an image
+			if (NO_OF_ROWS == LevelFile.DEFAULT_ROWS
+					&& NO_OF_COLS == LevelFile.DEFAULT_COLS
+					&& INVENTORY_COLS == LevelFile.DEFAULT_INVENTORY_COLS)
+				g.drawImage(imageBackground, 0, 0, Level.this);
 			else
-			{
-				conductWires();
-			}
+				Square.drawBoard(g, NO_OF_ROWS, NO_OF_COLS, NO_OF_COLS
+						- INVENTORY_COLS, SQUARE_SIZE);
+
+			// Draw the wires and then the items of the squares in the clip.
+			// Some item images spill past their square, so the items of the
+			// squares just above and left of the clip are drawn too. The item
+			// being dragged is off its square so it is not drawn
+			int firstRow = Math.max(clip.y / SQUARE_SIZE - 1, 0);
+			int firstCol = Math.max(clip.x / SQUARE_SIZE - 1, 0);
+			int lastRow = Math.min((clip.y + clip.height - 1) / SQUARE_SIZE,
+					NO_OF_ROWS - 1);
+			int lastCol = Math.min((clip.x + clip.width - 1) / SQUARE_SIZE,
+					NO_OF_COLS - 1);
+			for (int row = firstRow; row <= lastRow; row++)
+				for (int col = firstCol; col <= lastCol; col++)
+					if (simulation.hasWire(row, col))
+						g.drawImage(imageWire, col * SQUARE_SIZE, row
+								* SQUARE_SIZE, null);
+			for (int row = firstRow; row <= lastRow; row++)
+				for (int col = firstCol; col <= lastCol; col++)
+				{
+					int itemIndex = simulation.getItemIndex(row, col);
+					if (itemIndex >= 0)
+						items[itemIndex].drawSprite(g);
+				}
 		}
 	}
 }
@@ -0,0 +1,422 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * LevelCatalog - the list of levels and what is in each of them, kept in
+ * memory so the level select and the editor never look at the disk. The
+ * catalog is built on a thread of its own when it is made, then kept up to
+ * date by watching the levels folder: only the level files that were added,
+ * changed or deleted are read again, and the whole catalog is only built
+ * again when the level pack changes
+ */
+public class LevelCatalog
+{
+	/* Variables */
+	private File levelFolder;
+
+	// Reads the levels, one change at a time
+	private ExecutorService updater;
+
+	// The levels of the pack and the level files read so far by level number.
+	// A level's own file is used instead of its entry in the pack. Only used
+	// by the updater
+	private Entry[] packLevels;
+	private HashMap<Integer, Entry> levelFiles;
+
+	// The levels that can be played, replaced as a whole when they change
+	private volatile Entry[] levels;
+	private CountDownLatch built;
+
+	/**
+	 * Constructs a new LevelCatalog and starts building it and watching the
+	 * levels folder in the background
+	 *
+	 * @param levelFolder the levels folder
+	 */
+	public LevelCatalog(File levelFolder)
+	{
+		this.levelFolder = levelFolder;
+		levels = new Entry[0];
+		built = new CountDownLatch(1);
+		updater = Executors.newSingleThreadExecutor(new ThreadFactory()
+		{
+			public Thread newThread(Runnable task)
+			{
+				Thread thread = new Thread(task, "Level Catalog");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+		updater.execute(new Runnable()
+		{
+			public void run()
+			{
+				try
+				{
+					rebuild();
+				}
+				finally
+				{
+					built.countDown();
+				}
+				startWatching();
+			}
+		});
+	}
+
+	/**
+	 * Determines whether or not the catalog has been built the first time
+	 *
+	 * @return whether or not the levels have all been read
+	 */
+	public boolean isBuilt()
+	{
+		return built.getCount() == 0;
+	}
+
+	/**
+	 * Gives access to the levels that can be played as they are now, without
+	 * waiting for the catalog to be built
+	 *
+	 * @return the levels, in order, or none if the catalog is not built yet
+	 */
+	public Entry[] getLevels()
+	{
+		return levels;
+	}
+
+	/**
+	 * Gives access to the number of levels that can be played
+	 *
+	 * @return the number of levels
+	 */
+	public int getNoOfLevels()
+	{
+		return getLevels().length;
+	}
+
+	/**
+	 * Reads a file in the levels folder again in the background, such as a
+	 * level that was just saved, without waiting for the folder to be watched
+	 *
+	 * @param file the file that changed
+	 * @return the update, which is done once the catalog has the file
+	 */
+	public Future<?> refresh(File file)
+	{
+		final String fileName = file.getName();
+		return updater.submit(new Runnable()
+		{
+			public void run()
+			{
+				fileChanged(fileName);
+			}
+		});
+	}
+
+	/**
+	 * Reads every level again
+	 */
+	private void rebuild()
+	{
+		Main.reopenLevelPack();
+		LevelPack pack = Main.getLevelPack();
+		packLevels = new Entry[pack == null ? 0 : pack.getNoOfLevels()];
+		for (int level = 0; level < packLevels.length; level++)
+			try
+			{
+				packLevels[level] = new Entry(level + 1,
+						pack.getLevel(level + 1));
+			}
+			catch (IllegalArgumentException e)
+			{
+				// A broken level ends the levels that can be played
+				packLevels = Arrays.copyOf(packLevels, level);
+			}
+		levelFiles = new HashMap<Integer, Entry>();
+
+		// Find the levels of the pack that have a file of their own
+		for (int level = 0; level < packLevels.length; level++)
+			readLevelFile(level + 1);
+		publish();
+	}
+
+	/**
+	 * Updates the catalog after a file in the levels folder was added,
+	 * changed or deleted
+	 *
+	 * @param fileName the name of the file
+	 */
+	private void fileChanged(String fileName)
+	{
+		if (fileName.equals(LevelPack.PACK_FILE))
+		{
+			rebuild();
+			return;
+		}
+
+		// Read the level's file again, whichever kind it is. A level of the
+		// pack goes back to its entry in the pack if its file is gone
+		int levelNo = levelNumber(fileName);
+		if (levelNo == -1)
+			return;
+		levelFiles.remove(levelNo);
+		readLevelFile(levelNo);
+		publish();
+	}
+
+	/**
+	 * Finds the number of a level from the name of its file
+	 *
+	 * @param fileName the name of the file
+	 * @return the level number, or -1 if the file is not a level file
+	 */
+	private static int levelNumber(String fileName)
+	{
+		int end = fileName.lastIndexOf('.');
+		if (!fileName.startsWith("level") || end <= "level".length())
+			return -1;
+		String extension = fileName.substring(end);
+		if (!extension.equals(LevelFile.TEXT_EXTENSION)
+				&& !extension.equals(LevelFile.BINARY_EXTENSION))
+			return -1;
+		int levelNo = 0;
+		for (int pos = "level".length(); pos < end; pos++)
+		{
+			char digit = fileName.charAt(pos);
+			if (digit < '0' || digit > '9' || levelNo > 100000000)
+				return -1;
+			levelNo = levelNo * 10 + digit - '0';
+		}
+		return levelNo;
+	}
+
+	/**
+	 * Reads the file of a level into the catalog
+	 *
+	 * @param levelNo the number of the level
+	 * @return the level, or null if it has no file that can be read
+	 */
+	private Entry readLevelFile(int levelNo)
+	{
+		File levelFile = Main.findLevelFile(levelNo);
+		if (levelFile == null)
+			return null;
+		try
+		{
+			Entry entry = new Entry(levelNo, new LevelFile(levelFile));
+			levelFiles.put(levelNo, entry);
+			return entry;
+		}
+		// The file may still be being written, in which case it changes again
+		catch (FileNotFoundException e)
+		{
+		}
+		catch (UncheckedIOException e)
+		{
+		}
+		catch (IllegalArgumentException e)
+		{
+		}
+		return null;
+	}
+
+	/**
+	 * Replaces the levels that can be played: each level's own file if it has
+	 * one and its entry in the pack otherwise, up to the first level that has
+	 * neither. A level file numbered after a gap is not counted
+	 */
+	private void publish()
+	{
+		int noOfLevels = 0;
+		while (levelFiles.containsKey(noOfLevels + 1)
+				|| noOfLevels < packLevels.length
+				|| readLevelFile(noOfLevels + 1) != null)
+			noOfLevels++;
+
+		Entry[] newLevels = Arrays.copyOf(packLevels, noOfLevels);
+		for (int level = 0; level < noOfLevels; level++)
+			if (levelFiles.containsKey(level + 1))
+				newLevels[level] = levelFiles.get(level + 1);
+		levels = newLevels;
+	}
+
+	/**
+	 * Starts watching the levels folder on a thread of its own, handing each
+	 * change to the updater. If the folder cannot be watched the catalog only
+	 * changes when it is told to refresh
+	 */
+	private void startWatching()
+	{
+		final WatchService watcher;
+		try
+		{
+			watcher = FileSystems.getDefault().newWatchService();
+			levelFolder.toPath().register(watcher,
+					StandardWatchEventKinds.ENTRY_CREATE,
+					StandardWatchEventKinds.ENTRY_DELETE,
+					StandardWatchEventKinds.ENTRY_MODIFY);
+		}
+		catch (IOException e)
+		{
+			return;
+		}
+
+		Thread watchThread = new Thread(new Runnable()
+		{
+			public void run()
+			{
+				try
+				{
+					while (true)
+					{
+						WatchKey key = watcher.take();
+						for (WatchEvent<?> event : key.pollEvents())
+						{
+							// Events were lost, so read everything again
+							if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+								updater.execute(new Runnable()
+								{
+									public void run()
+									{
+										rebuild();
+									}
+								});
+							else
+								refresh(((Path) event.context()).toFile());
+						}
+
+						// Stop if the folder is gone
+						if (!key.reset())
+							return;
+					}
+				}
+				catch (InterruptedException e)
+				{
+				}
+				catch (ClosedWatchServiceException e)
+				{
+				}
+			}
+		}, "Level Catalog Watcher");
+		watchThread.setDaemon(true);
+		watchThread.start();
+	}
+
+	/**
+	 * Entry - what the catalog knows about one level: its name, the size of
+	 * its board and the number of items and wires on it
+	 */
+	public static class Entry
+	{
+		/* Variables */
+		private int levelNo;
+		private int noOfRows;
+		private int noOfCols;
+		private int noOfItems;
+		private int noOfWires;
+
+		/**
+		 * Constructs a new Entry from the board of a level
+		 *
+		 * @param levelNo the number of the level
+		 * @param levelFile the board of the level
+		 */
+		Entry(int levelNo, LevelFile levelFile)
+		{
+			this.levelNo = levelNo;
+			noOfRows = levelFile.getNoOfRows();
+			noOfCols = levelFile.getNoOfCols();
+			noOfItems = levelFile.getNoOfItems();
+			noOfWires = levelFile.getNoOfWires();
+		}
+
+		/**
+		 * Gives access to the number of the level
+		 *
+		 * @return the level number
+		 */
+		public int getLevelNo()
+		{
+			return levelNo;
+		}
+
+		/**
+		 * Gives access to the name of the level
+		 *
+		 * @return the name shown in the level select
+		 */
+		public String getName()
+		{
+			return "Level " + levelNo;
+		}
+
+		/**
+		 * Gives access to the number of rows of the board
+		 *
+		 * @return the number of rows
+		 */
+		public int getNoOfRows()
+		{
+			return noOfRows;
+		}
+
+		/**
+		 * Gives access to the number of columns of the board
+		 *
+		 * @return the number of columns
+		 */
+		public int getNoOfCols()
+		{
+			return noOfCols;
+		}
+
+		/**
+		 * Gives access to the number of items on the board
+		 *
+		 * @return the number of items
+		 */
+		public int getNoOfItems()
+		{
+			return noOfItems;
+		}
+
+		/**
+		 * Gives access to the number of wires on the board
+		 *
+		 * @return the number of wires
+		 */
+		public int getNoOfWires()
+		{
+			return noOfWires;
+		}
+
+		/**
+		 * Describes the level
+		 *
+		 * @return the description of the level
+		 */
+		public String toString()
+		{
+			return getName() + ": " + noOfRows + " x " + noOfCols + ", "
+					+ noOfItems + " items, " + noOfWires + " wires";
+		}
+	}
+}
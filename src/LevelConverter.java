@@ -0,0 +1,97 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * LevelConverter - converts level files between the text ".op" format and the
+ * binary ".opb" format. Each file is written next to the one it came from with
+ * the other extension
+ */
+public class LevelConverter
+{
+	/**
+	 * Converts a level file to the other format
+	 *
+	 * @param levelFile the ".op" or ".opb" file to convert
+	 * @param compress whether or not to compress a ".opb" file
+	 * @return the file that was written
+	 * @throws IOException if a file cannot be read or written
+	 * @throws IllegalArgumentException if the file's name does not end with
+	 *             ".op" or ".opb"
+	 */
+	public static File convert(File levelFile, boolean compress)
+			throws IOException
+	{
+		// Only look for the extension in the file's own name, so dots in the
+		// folders are never taken for it
+		String name = levelFile.getName();
+		String baseName;
+		boolean binary;
+		if (name.endsWith(LevelFile.BINARY_EXTENSION))
+		{
+			baseName = name.substring(0, name.length()
+					- LevelFile.BINARY_EXTENSION.length());
+			binary = true;
+		}
+		else if (name.endsWith(LevelFile.TEXT_EXTENSION))
+		{
+			baseName = name.substring(0, name.length()
+					- LevelFile.TEXT_EXTENSION.length());
+			binary = false;
+		}
+		else
+			throw new IllegalArgumentException("Not a level file: "
+					+ levelFile.getPath());
+
+		LevelFile board = new LevelFile(levelFile);
+		File converted;
+		if (binary)
+		{
+			converted = new File(levelFile.getParentFile(), baseName
+					+ LevelFile.TEXT_EXTENSION);
+			board.write(converted);
+		}
+		else
+		{
+			converted = new File(levelFile.getParentFile(), baseName
+					+ LevelFile.BINARY_EXTENSION);
+			board.writeBinary(converted, compress);
+		}
+		return converted;
+	}
+
+	/**
+	 * Converts the files given, or every ".op" file in the levels folder to
+	 * ".opb" if no files are given
+	 *
+	 * @param args "-z" to compress the ".opb" files (optional), then the
+	 *            files to convert (optional)
+	 * @throws IOException if a file cannot be read or written
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		boolean compress = args.length > 0 && args[0].equals("-z");
+
+		// Find the level files
+		List<File> levelFiles = new ArrayList<File>();
+		for (int arg = compress ? 1 : 0; arg < args.length; arg++)
+			levelFiles.add(new File(args[arg]));
+		if (levelFiles.isEmpty())
+			for (File file : new File("./levels").listFiles())
+				if (file.isFile()
+						&& file.getName().endsWith(LevelFile.TEXT_EXTENSION))
+					levelFiles.add(file);
+
+		for (File file : levelFiles)
+			try
+			{
+				System.out.println(file.getPath() + " -> "
+						+ convert(file, compress).getPath());
+			}
+			catch (IllegalArgumentException e)
+			{
+				System.out.println(file.getPath() + ": " + e.getMessage());
+			}
+	}
+}
@@ -6,15 +6,13 @@ import javax.swing.filechooser.FileNameExtensionFilter;
 import java.awt.event.*;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.util.ArrayList;
-import java.util.Scanner;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Level Editor - the level editor panel where levels are created and saved to a
- * ".op" file for future loading by the Level class
+ * ".op" or ".opb" file for future loading by the Level class
  * 
  * @author Derrick Thai and Riddle Li
  * @version v6.2Final, Last Updated: June 16, 2014
@@ -26,21 +24,27 @@ public class LevelEditor extends JPanel implements MouseListener,
 	private static final long serialVersionUID = 1L;
 
 	/* Constants */
-	// Board Size
+	// Board Size. The inventory and choices take up the top right of the
+	// board, so boards can be made longer and wider but not shorter
 	private final int SQUARE_SIZE = 60;
-	private final int NO_OF_ROWS = 10;
-	private final int NO_OF_COLS = 16;
-	private final int INVENTORY_COLS = 6;
+	private final int MIN_ROWS = LevelFile.DEFAULT_ROWS;
+	private final int INVENTORY_COLS = LevelFile.DEFAULT_INVENTORY_COLS;
 	private final int INVENTORY_ROWS = 6;
-	private final Dimension BOARD_SIZE = new Dimension(
-			NO_OF_COLS * SQUARE_SIZE, NO_OF_ROWS * SQUARE_SIZE);
 
 	// Total number of item types
 	private int NO_OF_CHOICE_ITEMS = Item.OFF_FILE_NAMES.length;
 
 	/* Variables */
 	// Board
-	private Square[][] board;
+	private int noOfRows;
+	private int noOfCols;
+	private Dimension boardSize;
+
+	// The index of the item on each square (or Square.EMPTY or
+	// Square.DISABLED) and the index of the wire on each square (or
+	// Square.EMPTY), so what is under the mouse is found from its square
+	private ChunkedBoard squareItems;
+	private ChunkedBoard squareWires;
 
 	// Items and Wires
 	private int noOfItems;
@@ -54,6 +58,9 @@ public class LevelEditor extends JPanel implements MouseListener,
 	// Selected Item and Wire
 	Point lastPoint, firstPoint;
 
+	// The square a placed item or wire was picked up from
+	private int firstRow, firstCol;
+
 	private Item selectedItem;
 	private int selectedItemIndex;
 	private boolean selectedChoiceItem;
@@ -65,6 +72,7 @@ public class LevelEditor extends JPanel implements MouseListener,
 	// Buttons
 	private JButton saveButton;
 	private JButton openButton;
+	private JButton sizeButton;
 
 	// Background image
 	Image imageBackground;
@@ -82,7 +90,7 @@ public class LevelEditor extends JPanel implements MouseListener,
 		addMouseMotionListener(this);
 
 		// Panel preferences
-		setPreferredSize(BOARD_SIZE);
+		setBoardSize(LevelFile.DEFAULT_ROWS, LevelFile.DEFAULT_COLS);
 		setLayout(null);
 		setFocusable(true);
 		requestFocusInWindow();
@@ -95,32 +103,39 @@ public class LevelEditor extends JPanel implements MouseListener,
 		loadButtons();
 
 		// Initialize the background image for the editor
-		imageBackground = new ImageIcon("./images/editorBoard.png").getImage();
+		imageBackground = SpriteCache.getImage("editorBoard.png");
 	}
 
 	/**
-	 * Initializes the square objects
+	 * Initializes the squares
 	 */
 	private void loadSquares()
 	{
-		// Initialize the array of squares
-		board = new Square[NO_OF_ROWS][NO_OF_COLS];
-
-		// Initialize each square
-		for (int row = 0; row < board.length; row++)
-			for (int col = 0; col < board[row].length; col++)
-				board[row][col] = new Square(col * SQUARE_SIZE, row
-						* SQUARE_SIZE, SQUARE_SIZE);
+		// Every square starts empty with no wire
+		squareItems = new ChunkedBoard(noOfRows, noOfCols, Square.EMPTY);
+		squareWires = new ChunkedBoard(noOfRows, noOfCols, Square.EMPTY);
 
 		// Disable choice item squares and the dividing column between the
 		// inventory and board, but leave the inventory squares enabled
-		for (int row = 0; row < board.length; row++)
-			for (int col = NO_OF_COLS - INVENTORY_COLS; col < board[row].length; col++)
-				board[row][col].disable();
-		for (int row = 0; row < NO_OF_ROWS - INVENTORY_ROWS; row++)
-			for (int col = NO_OF_COLS - INVENTORY_COLS + 1; col < board[row].length; col++)
-				board[row][col].removeItem();
+		for (int row = 0; row < noOfRows; row++)
+			for (int col = noOfCols - INVENTORY_COLS; col < noOfCols; col++)
+				squareItems.set(row, col, Square.DISABLED);
+		for (int row = 0; row < MIN_ROWS - INVENTORY_ROWS; row++)
+			for (int col = noOfCols - INVENTORY_COLS + 1; col < noOfCols; col++)
+				squareItems.set(row, col, Square.EMPTY);
+	}
 
+	/**
+	 * Adds an item to a square if the square is empty
+	 * 
+	 * @param row the row of the square
+	 * @param col the column of the square
+	 * @param itemIndex the index of the item
+	 */
+	private void addItem(int row, int col, int itemIndex)
+	{
+		if (squareItems.get(row, col) == Square.EMPTY)
+			squareItems.set(row, col, itemIndex);
 	}
 
 	/**
@@ -145,7 +160,7 @@ public class LevelEditor extends JPanel implements MouseListener,
 		for (int item = 0; item < NO_OF_CHOICE_ITEMS; item++)
 		{
 			// Calculate the coordinates of square to put the item in
-			int itemX = ((item % (INVENTORY_COLS - 1)) + NO_OF_COLS
+			int itemX = ((item % (INVENTORY_COLS - 1)) + noOfCols
 					- INVENTORY_COLS + 1)
 					* SQUARE_SIZE;
 			int itemY = ((item / (INVENTORY_COLS - 1)) + 5) * SQUARE_SIZE;
@@ -156,7 +171,7 @@ public class LevelEditor extends JPanel implements MouseListener,
 
 		// Initialize the choice wire and add it to the bottom-left most corner
 		// choice square since we do not want the items to overlap the wire
-		choiceWire = new Wire((NO_OF_COLS - 1) * SQUARE_SIZE, (NO_OF_ROWS - 1)
+		choiceWire = new Wire((noOfCols - 1) * SQUARE_SIZE, (MIN_ROWS - 1)
 				* SQUARE_SIZE, this);
 
 		// Start with no items or wires on the board
@@ -172,14 +187,101 @@ public class LevelEditor extends JPanel implements MouseListener,
 		// Save button
 		saveButton = new JButton("Save");
 		saveButton.addActionListener(this);
-		saveButton.setBounds(660, 540, 120, 60);
 		add(saveButton);
 
 		// Open button
 		openButton = new JButton("Open");
 		openButton.addActionListener(this);
-		openButton.setBounds(780, 540, 120, 60);
 		add(openButton);
+
+		// Size button
+		sizeButton = new JButton("Size");
+		sizeButton.addActionListener(this);
+		add(sizeButton);
+
+		placeButtons();
+	}
+
+	/**
+	 * Puts the buttons under the choices, just right of the dividing column
+	 */
+	private void placeButtons()
+	{
+		int buttonX = (noOfCols - INVENTORY_COLS + 1) * SQUARE_SIZE;
+		saveButton.setBounds(buttonX, 9 * SQUARE_SIZE, 2 * SQUARE_SIZE,
+				SQUARE_SIZE);
+		openButton.setBounds(buttonX + 2 * SQUARE_SIZE, 9 * SQUARE_SIZE,
+				2 * SQUARE_SIZE, SQUARE_SIZE);
+		sizeButton.setBounds(buttonX, 8 * SQUARE_SIZE, 2 * SQUARE_SIZE,
+				SQUARE_SIZE);
+	}
+
+	/**
+	 * Sets the size of the board, taking everything off it
+	 * 
+	 * @param noOfRows the number of rows
+	 * @param noOfCols the number of columns, including the inventory
+	 */
+	private void setBoardSize(int noOfRows, int noOfCols)
+	{
+		this.noOfRows = noOfRows;
+		this.noOfCols = noOfCols;
+		boardSize = new Dimension(noOfCols * SQUARE_SIZE, noOfRows
+				* SQUARE_SIZE);
+		setPreferredSize(boardSize);
+	}
+
+	/**
+	 * Asks for a new board size and starts a new board of that size
+	 */
+	private void changeSize()
+	{
+		String reply = JOptionPane.showInputDialog(this,
+				"Enter the number of rows and playing columns (e.g. 20 x 30)",
+				noOfRows + " x " + (noOfCols - INVENTORY_COLS));
+		if (reply == null)
+			return;
+
+		// Read the two numbers
+		String[] numbers = reply.split("[^0-9]+");
+		int first = numbers.length > 0 && numbers[0].isEmpty() ? 1 : 0;
+		if (numbers.length - first != 2)
+		{
+			JOptionPane.showMessageDialog(this,
+					"Invalid size. Enter two numbers such as 20 x 30.");
+			return;
+		}
+		int rows = Integer.parseInt(numbers[first]);
+		int playCols = Integer.parseInt(numbers[first + 1]);
+
+		// Check the size fits the inventory and the largest board
+		if (rows < MIN_ROWS || rows > LevelFile.MAX_ROWS || playCols < 1
+				|| playCols + INVENTORY_COLS > LevelFile.MAX_COLS)
+		{
+			JOptionPane.showMessageDialog(this, "Boards must have " + MIN_ROWS
+					+ " to " + LevelFile.MAX_ROWS + " rows and 1 to "
+					+ (LevelFile.MAX_COLS - INVENTORY_COLS)
+					+ " playing columns.");
+			return;
+		}
+
+		// Start a new board of that size
+		setBoardSize(rows, playCols + INVENTORY_COLS);
+		loadBoard();
+	}
+
+	/**
+	 * Clears the board and lays out the squares, choices and buttons for the
+	 * current board size
+	 */
+	private void loadBoard()
+	{
+		loadArrayLists();
+		loadSquares();
+		loadChoices();
+		placeButtons();
+		revalidate();
+		repaint();
 	}
 
 	/**
@@ -224,9 +326,9 @@ public class LevelEditor extends JPanel implements MouseListener,
 			fileChooser.setSelectedFile(new File("level"
 					+ (Main.noOfLevels + 1)));
 
-			// Add the filter for level file extension "op"
+			// Add the filter for level file extensions "op" and "opb"
 			FileNameExtensionFilter filter = new FileNameExtensionFilter(
-					"OP files", "op");
+					"OP files", "op", "opb");
 			fileChooser.setFileFilter(filter);
 
 			// Make the starting directory the levels folder
@@ -237,11 +339,14 @@ public class LevelEditor extends JPanel implements MouseListener,
 			int userSelection = fileChooser.showSaveDialog(this);
 			if (userSelection == JFileChooser.APPROVE_OPTION)
 			{
-				// If extension is missing, add it
+				// If extension is missing, add it. Files named ".opb" are saved
+				// in the binary format
 				File fileToSave = fileChooser.getSelectedFile();
 				String filePathName = fileToSave.getAbsolutePath();
-				if (!filePathName.endsWith(".op"))
-					fileToSave = new File(fileChooser.getSelectedFile() + ".op");
+				if (!filePathName.endsWith(LevelFile.TEXT_EXTENSION)
+						&& !filePathName.endsWith(LevelFile.BINARY_EXTENSION))
+					fileToSave = new File(fileChooser.getSelectedFile()
+							+ LevelFile.TEXT_EXTENSION);
 
 				// If the file exists, confirm to overwrite
 				if (fileToSave.exists())
@@ -261,52 +366,26 @@ public class LevelEditor extends JPanel implements MouseListener,
 				// Once the file is ready, write the level to the file
 				try
 				{
-					// Make a brand new file to handle overwriting
-					PrintWriter outFile = new PrintWriter(new FileWriter(
-							fileToSave, false));
-
-					// Print the number of items and wires on the first two
-					// lines of the file
-					outFile.println(noOfItems + " = Number of Items");
-					outFile.println(noOfWires + " = Number of Wires");
-
-					// Scan each square of the board and print the correct
-					// characters to the file to identify each square
-					for (int row = 0; row < board.length; row++)
+					toLevelFile().save(fileToSave);
+
+					// Wait for the catalog to have the level, so the next save
+					// suggests the level after it
+					try
 					{
-						for (int col = 0; col < board[row].length; col++)
-						{
-							// Get the item index that square has
-							int printCh = board[row][col].getItemIndex();
-							boolean wire = board[row][col].hasWire();
-
-							// Square has no item
-							if (printCh == Square.EMPTY)
-								// Square has no wire
-								if (!wire)
-									outFile.print('O');
-								// Square has wire
-								else
-									outFile.print('W');
-							// Square is disabled
-							else if (printCh == Square.DISABLED)
-								outFile.print('X');
-							// Square has item
-							else
-							{
-								// Make number negative if wire + item
-								if (wire)
-									outFile.print("-");
-								outFile.print(items.get(printCh).getItemType());
-							}
-							outFile.print(" ");
-						}
-						outFile.println();
+						Main.getLevelCatalog().refresh(fileToSave).get();
+					}
+					catch (InterruptedException e)
+					{
+						Thread.currentThread().interrupt();
+					}
+					catch (ExecutionException e)
+					{
+						e.printStackTrace();
 					}
+
 					// Successful save message
 					JOptionPane.showMessageDialog(this,
 							"Level saved sucessfully.");
-					outFile.close();
 				}
 				catch (IOException e)
 				{
@@ -335,9 +414,9 @@ public class LevelEditor extends JPanel implements MouseListener,
 		JFileChooser fileChooser = new JFileChooser();
 		fileChooser.setDialogTitle("Select a level to open.");
 
-		// Add a filter for level file extensions ".op"
+		// Add a filter for level file extensions ".op" and ".opb"
 		FileNameExtensionFilter filter = new FileNameExtensionFilter(
-				"OP files", "op");
+				"OP files", "op", "opb");
 		fileChooser.setFileFilter(filter);
 
 		// Make starting directory the levels folder
@@ -351,75 +430,87 @@ public class LevelEditor extends JPanel implements MouseListener,
 			// Try to load the file
 			try
 			{
-				// Recreate the squares and ArrayLists
-				loadArrayLists();
-				loadSquares();
-				int itemIndex = 0;
-
-				// Load the file and read the number of items and wires
-				Scanner inFile = new Scanner(fileChooser.getSelectedFile());
-				noOfItems = inFile.nextInt();
-				inFile.nextLine();
-				noOfWires = inFile.nextInt();
-				inFile.nextLine();
-
-				// Add the item objects
-				for (int row = 0; row < board.length; row++)
-					for (int col = 0; col < board[row].length; col++)
-					{
-						// Store the next String
-						String readStr = inFile.next();
+				LevelFile levelFile = new LevelFile(
+						fileChooser.getSelectedFile());
 
-						// If the string is not a letter there must be an item
-						if (!Level.isLetter(readStr))
-						{
-							// If the number is negative, there is also a wire
-							// (check the character because -0 is a possibility)
-							if (readStr.charAt(0) == '-')
-							{
-								// Add the wire
-								wires.add(new Wire(col * SQUARE_SIZE, row
-										* SQUARE_SIZE, this));
-								board[row][col].addWire();
-							}
-
-							// Use the positive value of the integer to decide
-							// the item type and add that item
-							int readInt = Math.abs(Integer.parseInt(readStr));
+				// The inventory and choices need the default inventory and at
+				// least the default number of rows
+				if (levelFile.getNoOfRows() < MIN_ROWS
+						|| levelFile.getInventoryCols() != INVENTORY_COLS)
+				{
+					JOptionPane.showMessageDialog(this,
+							"This level's board is too small for the editor.");
+					return;
+				}
 
-							items.add(new Item(col * SQUARE_SIZE, row
-									* SQUARE_SIZE, readInt, this));
-							board[row][col].addItem(itemIndex++);
+				// Recreate the squares and ArrayLists for the level's size
+				setBoardSize(levelFile.getNoOfRows(), levelFile.getNoOfCols());
+				loadBoard();
+				noOfItems = 0;
+				noOfWires = 0;
 
+				// Add the item and wire objects
+				for (int row = 0; row < noOfRows; row++)
+					for (int col = 0; col < noOfCols; col++)
+					{
+						if (levelFile.hasWire(row, col))
+						{
+							wires.add(new Wire(col * SQUARE_SIZE, row
+									* SQUARE_SIZE, this));
+							squareWires.set(row, col, noOfWires++);
 						}
-						// If the string is a letter then there is no item
-						else
+
+						int itemType = levelFile.getItemType(row, col);
+						if (itemType != Square.EMPTY)
 						{
-							char readCh = readStr.charAt(0);
-
-							// 'X' is an disabled square
-							if (readCh == 'X')
-								board[row][col].disable();
-							// 'W' is a wire by itself
-							else if (readCh == 'W')
-							{
-								wires.add(new Wire(col * SQUARE_SIZE, row
-										* SQUARE_SIZE, this));
-								board[row][col].addWire();
-							}
-							// 'O' is for a completely empty square but no code
+							items.add(new Item(col * SQUARE_SIZE, row
+									* SQUARE_SIZE, itemType, this));
+							addItem(row, col, noOfItems++);
 						}
+						else if (levelFile.isDisabled(row, col))
+							squareItems.set(row, col, Square.DISABLED);
 					}
-				inFile.close();
-				paintImmediately(0, 0, BOARD_SIZE.width, BOARD_SIZE.height);
+				paintImmediately(0, 0, boardSize.width, boardSize.height);
 			}
 			catch (FileNotFoundException e)
 			{
 				e.printStackTrace();
 			}
+			// The file is not laid out like a level
+			catch (IllegalArgumentException e)
+			{
+				JOptionPane.showMessageDialog(this,
+						"This file is not a valid level.");
+			}
 		}
 	}
 
+	/**
+	 * Puts the board into a LevelFile that can be written to a ".op" file
+	 * 
+	 * @return the board as a LevelFile
+	 */
+	private LevelFile toLevelFile()
+	{
+		LevelFile levelFile = new LevelFile(noOfRows, noOfCols, INVENTORY_COLS);
+		for (int row = 0; row < noOfRows; row++)
+			for (int col = 0; col < noOfCols; col++)
+			{
+				int itemIndex = squareItems.get(row, col);
+				if (itemIndex == Square.DISABLED)
+					levelFile.disable(row, col);
+				else
+				{
+					if (itemIndex != Square.EMPTY)
+						levelFile.setItemType(row, col, items.get(itemIndex)
+								.getItemType());
+					levelFile.setWire(row, col,
+							squareWires.get(row, col) != Square.EMPTY);
+				}
+			}
+		return levelFile;
+	}
+
 	/**
 	 * Checks to make sure the level is valid(has only one source and target)
 	 * 
@@ -441,12 +532,11 @@ public class LevelEditor extends JPanel implements MouseListener,
 				int col = xCoordToCol(items.get(item).x);
 
 				// Ensure there is a wire under the source and target
-				if (!board[row][col].hasWire())
+				if (squareWires.get(row, col) == Square.EMPTY)
 				{
 					wires.add(new Wire(col * SQUARE_SIZE, row * SQUARE_SIZE,
 							this));
-					board[row][col].addWire();
-					noOfWires++;
+					squareWires.set(row, col, noOfWires++);
 
 					// Notify user that a wire was automatically added under a
 					// source or target that was missing a wire
@@ -477,8 +567,13 @@ public class LevelEditor extends JPanel implements MouseListener,
 	{
 		super.paintComponent(g);
 
-		// Draw the background image
-		g.drawImage(imageBackground, 0, 0, this);
+		// Draw the background image. Other board sizes draw their squares
+		if (noOfRows == LevelFile.DEFAULT_ROWS
+				&& noOfCols == LevelFile.DEFAULT_COLS)
+			g.drawImage(imageBackground, 0, 0, this);
+		else
+			Square.drawBoard(g, noOfRows, noOfCols, noOfCols - INVENTORY_COLS,
+					SQUARE_SIZE);
 
 		// Draw the choice items and wires
 		for (Item choiceItem : choiceItems)
@@ -529,7 +624,7 @@ public class LevelEditor extends JPanel implements MouseListener,
 					lastPoint = selectedPoint;
 					selectedChoiceItem = true;
 				}
-				repaint();
+				repaint(choiceItems[i]);
 				return;
 			}
 
@@ -552,93 +647,150 @@ public class LevelEditor extends JPanel implements MouseListener,
 				lastPoint = selectedPoint;
 				selectedChoiceWire = true;
 			}
-			repaint();
+			repaint(choiceWire);
 			return;
 		}
 
 		// Check if point clicked contains an item
-		for (int i = 0; i < items.size(); i++)
-			if (items.get(i).contains(selectedPoint))
-			{
-				// Right mouse button
-				if (event.getButton() == MouseEvent.BUTTON3)
-				{
-					// Remove the item
-					items.remove(i);
-					correctItemIndexes();
-					noOfItems--;
-				}
-				// Left mouse button
-				else
-				{
-					// Store the selected item
-					selectedItem = items.get(i);
-					selectedItemIndex = i;
-
-					// Store the point where this item came from
-					firstPoint = selectedPoint;
-					lastPoint = selectedPoint;
-					selectedChoiceItem = false;
-				}
+		int itemIndex = findItem(selectedPoint);
+		if (itemIndex != -1)
+		{
+			// Only the item's square needs repainting
+			Item item = items.get(itemIndex);
+			repaint(item);
 
-				// Remove the item from the square
-				board[yCoordToRow(selectedPoint.y)][xCoordToCol(selectedPoint.x)]
-						.removeItem();
+			// Right mouse button
+			if (event.getButton() == MouseEvent.BUTTON3)
+			{
+				// Remove the item
+				items.remove(itemIndex);
+				correctItemIndexes();
+				noOfItems--;
+			}
+			// Left mouse button
+			else
+			{
+				// Store the selected item
+				selectedItem = item;
+				selectedItemIndex = itemIndex;
 
-				repaint();
-				return;
+				// Store the point and square where this item came from
+				firstPoint = selectedPoint;
+				lastPoint = selectedPoint;
+				firstRow = yCoordToRow(item.y);
+				firstCol = xCoordToCol(item.x);
+				selectedChoiceItem = false;
 			}
 
+			// Remove the item from its square
+			squareItems.set(yCoordToRow(item.y), xCoordToCol(item.x),
+					Square.EMPTY);
+			return;
+		}
+
 		// Check if the point clicked contains a wire
-		for (int i = 0; i < wires.size(); i++)
-			if (wires.get(i).contains(selectedPoint))
+		int wireIndex = findWire(selectedPoint);
+		if (wireIndex != -1)
+		{
+			// Only the wire's square needs repainting
+			Wire wire = wires.get(wireIndex);
+			repaint(wire);
+
+			// Right mouse button
+			if (event.getButton() == MouseEvent.BUTTON3)
 			{
-				// Right mouse button
-				if (event.getButton() == MouseEvent.BUTTON3)
-				{
-					// Remove the wire
-					board[yCoordToRow(selectedPoint.y)][xCoordToCol(selectedPoint.x)]
-							.removeWire();
-					wires.remove(i);
-					noOfWires--;
-				}
-				// Left mouse button
-				else
-				{
-					// Store the selected wire
-					selectedWire = wires.get(i);
-					selectedWireIndex = i;
+				// Remove the wire
+				wires.remove(wireIndex);
+				correctWireIndexes();
+				noOfWires--;
+			}
+			// Left mouse button
+			else
+			{
+				// Store the selected wire
+				selectedWire = wire;
+				selectedWireIndex = wireIndex;
 
-					// Store the point where this wire came from
-					firstPoint = selectedPoint;
-					lastPoint = selectedPoint;
-					selectedChoiceWire = false;
-				}
+				// Store the point and square where this wire came from
+				firstPoint = selectedPoint;
+				lastPoint = selectedPoint;
+				firstRow = yCoordToRow(wire.y);
+				firstCol = xCoordToCol(wire.x);
+				selectedChoiceWire = false;
+			}
 
-				// Remove the wire from the square
-				board[yCoordToRow(selectedPoint.y)][xCoordToCol(selectedPoint.x)]
-						.removeWire();
+			// Remove the wire from its square
+			squareWires.set(yCoordToRow(wire.y), xCoordToCol(wire.x),
+					Square.EMPTY);
+		}
+	}
 
-				repaint();
-				return;
+	/**
+	 * Finds the item under a point from the squares around it. Item images
+	 * can spill into the squares right of and below their own, so the
+	 * squares above and left of the point are checked too. The item being
+	 * dragged is not on a square and is never found
+	 * 
+	 * @param point the point to check
+	 * @return the index of the first item containing the point, or -1
+	 */
+	private int findItem(Point point)
+	{
+		int found = -1;
+		int pointRow = yCoordToRow(point.y);
+		int pointCol = xCoordToCol(point.x);
+		for (int row = Math.max(pointRow - 1, 0); row <= pointRow
+				&& row < noOfRows; row++)
+			for (int col = Math.max(pointCol - 1, 0); col <= pointCol
+					&& col < noOfCols; col++)
+			{
+				int itemIndex = squareItems.get(row, col);
+				if (itemIndex >= 0 && (found == -1 || itemIndex < found)
+						&& items.get(itemIndex).contains(point))
+					found = itemIndex;
 			}
+		return found;
+	}
+
+	/**
+	 * Finds the wire under a point from the square the point is on. The wire
+	 * being dragged is not on a square and is never found
+	 * 
+	 * @param point the point to check
+	 * @return the index of the wire containing the point, or -1
+	 */
+	private int findWire(Point point)
+	{
+		int row = yCoordToRow(point.y);
+		int col = xCoordToCol(point.x);
+		if (point.x < 0 || point.y < 0 || row >= noOfRows || col >= noOfCols)
+			return -1;
+		int wireIndex = squareWires.get(row, col);
+		if (wireIndex >= 0 && wires.get(wireIndex).contains(point))
+			return wireIndex;
+		return -1;
 	}
 
 	/**
-	 * Adjust the Square object's item indexes when a deletion is made
+	 * Adjust the squares' item indexes when a deletion is made
 	 */
 	private void correctItemIndexes()
 	{
-		// Make sure each Item matches its Square's item index
+		// Make sure each Item matches its square's item index
 		for (int item = 0; item < items.size(); item++)
-			if (board[yCoordToRow(items.get(item).y)][xCoordToCol(items
-					.get(item).x)].getItemIndex() != item)
-			{
-				board[yCoordToRow(items.get(item).y)][xCoordToCol(items
-						.get(item).x)].removeItem();
-				board[yCoordToRow(items.get(item).y)][xCoordToCol(items
-						.get(item).x)].addItem(item);
-			}
+			squareItems.set(yCoordToRow(items.get(item).y),
+					xCoordToCol(items.get(item).x), item);
+	}
+
+	/**
+	 * Adjust the squares' wire indexes when a deletion is made
+	 */
+	private void correctWireIndexes()
+	{
+		// Make sure each Wire matches its square's wire index
+		for (int wire = 0; wire < wires.size(); wire++)
+			squareWires.set(yCoordToRow(wires.get(wire).y),
+					xCoordToCol(wires.get(wire).x), wire);
 	}
 
 	/**
@@ -653,12 +805,11 @@ public class LevelEditor extends JPanel implements MouseListener,
 		Point currentPoint = event.getPoint();
 
 		// Item
-		for (int i = 0; i < items.size(); i++)
-			if (items.get(i).contains(currentPoint))
-			{
-				setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
-				return;
-			}
+		if (findItem(currentPoint) != -1)
+		{
+			setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
+			return;
+		}
 		// Choice Item
 		for (int i = 0; i < choiceItems.length; i++)
 			if (choiceItems[i].contains(currentPoint))
@@ -667,12 +818,11 @@ public class LevelEditor extends JPanel implements MouseListener,
 				return;
 			}
 		// Wire
-		for (int i = 0; i < wires.size(); i++)
-			if (wires.get(i).contains(currentPoint))
-			{
-				setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
-				return;
-			}
+		if (findWire(currentPoint) != -1)
+		{
+			setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
+			return;
+		}
 		// Choice wire
 		if (choiceWire.contains(currentPoint))
 		{
@@ -693,19 +843,22 @@ public class LevelEditor extends JPanel implements MouseListener,
 	{
 		Point currentPoint = event.getPoint();
 
-		// Update the selected item with the mouse position
+		// Update the selected item with the mouse position, repainting where
+		// it was and where it is now
 		if (selectedItem != null)
 		{
+			Rectangle dirtyArea = new Rectangle(selectedItem);
 			selectedItem.move(lastPoint, currentPoint);
 			lastPoint = currentPoint;
-			repaint();
+			repaint(dirtyArea.union(selectedItem));
 		}
 		// Update the selected wire with the mouse position
 		else if (selectedWire != null)
 		{
+			Rectangle dirtyArea = new Rectangle(selectedWire);
 			selectedWire.move(lastPoint, currentPoint);
 			lastPoint = currentPoint;
-			repaint();
+			repaint(dirtyArea.union(selectedWire));
 		}
 	}
 
@@ -719,6 +872,9 @@ public class LevelEditor extends JPanel implements MouseListener,
 		// Item release
 		if (selectedItem != null)
 		{
+			// Repaint where the item was dropped and where it ends up
+			Rectangle dirtyArea = new Rectangle(selectedItem);
+
 			// Use item coordinates instead of mouse to determine what square
 			// the item should snap to since we want the item to snap to its
 			// closest square and not snap to the closest square to the mouse
@@ -732,21 +888,20 @@ public class LevelEditor extends JPanel implements MouseListener,
 			// Invalid Move
 			// Check if the item is out of board or on another item or out of
 			// bound in another way
-			if (itemX > NO_OF_COLS * SQUARE_SIZE
-					|| itemY > NO_OF_ROWS * SQUARE_SIZE
+			if (itemX >= noOfCols * SQUARE_SIZE
+					|| itemY >= noOfRows * SQUARE_SIZE
 					|| itemX < 0
 					|| itemY < 0
-					|| board[squareRow][squareCol].getItemIndex() != -1
+					|| squareItems.get(squareRow, squareCol) != Square.EMPTY
 					|| ((selectedItem.getItemType() == Item.SOURCE || selectedItem
-							.getItemType() == Item.TARGET) && itemX > (NO_OF_COLS - INVENTORY_COLS)
+							.getItemType() == Item.TARGET) && itemX >= (noOfCols - INVENTORY_COLS)
 							* SQUARE_SIZE))
 				// If holding an already placed item:
 				if (!selectedChoiceItem)
 				{
 					// Return the item to where it came from
 					selectedItem.move(lastPoint, firstPoint);
-					board[yCoordToRow(firstPoint.y)][xCoordToCol(firstPoint.x)]
-							.addItem(selectedItemIndex);
+					addItem(firstRow, firstCol, selectedItemIndex);
 				}
 				// If holding an item just spawned:
 				else
@@ -760,17 +915,20 @@ public class LevelEditor extends JPanel implements MouseListener,
 			{
 				// Adjust the new position and add the item to the square
 				selectedItem.snapToSquare(itemX, itemY, SQUARE_SIZE);
-				board[yCoordToRow(selectedItem.y)][xCoordToCol(selectedItem.x)]
-						.addItem(selectedItemIndex);
+				addItem(yCoordToRow(selectedItem.y),
+						xCoordToCol(selectedItem.x), selectedItemIndex);
 			}
 
+			repaint(dirtyArea.union(selectedItem));
 			selectedItem = null;
 			selectedItemIndex = -1;
-			repaint();
 		}
 		// Wire release
 		else if (selectedWire != null)
 		{
+			// Repaint where the wire was dropped and where it ends up
+			Rectangle dirtyArea = new Rectangle(selectedWire);
+
 			// Use wire coordinates instead of mouse to determine what square
 			// the wire should snap to since we want the wire to snap to its
 			// closest square and not snap to the closest square to the mouse
@@ -783,17 +941,17 @@ public class LevelEditor extends JPanel implements MouseListener,
 
 			// Invalid move
 			// Check if the wire is out of electricity grid
-			if (wireX > (NO_OF_COLS - INVENTORY_COLS) * SQUARE_SIZE
-					|| wireY > NO_OF_ROWS * SQUARE_SIZE || wireX < 0
-					|| wireY < 0 || board[squareRow][squareCol].hasWire()
-					|| board[squareRow][squareCol].getItemIndex() != -1)
+			if (wireX >= (noOfCols - INVENTORY_COLS) * SQUARE_SIZE
+					|| wireY >= noOfRows * SQUARE_SIZE || wireX < 0
+					|| wireY < 0
+					|| squareWires.get(squareRow, squareCol) != Square.EMPTY
+					|| squareItems.get(squareRow, squareCol) != Square.EMPTY)
 				// If holding an already placed wire:
 				if (!selectedChoiceWire)
 				{
 					// Return the wire to where it came from
 					selectedWire.move(lastPoint, firstPoint);
-					board[yCoordToRow(firstPoint.y)][xCoordToCol(firstPoint.x)]
-							.addWire();
+					squareWires.set(firstRow, firstCol, selectedWireIndex);
 				}
 				// If holding an wire just spawned:
 				else
@@ -807,13 +965,13 @@ public class LevelEditor extends JPanel implements MouseListener,
 			{
 				// Adjust the new position and add the wire to the square
 				selectedWire.snapToSquare(wireX, wireY, SQUARE_SIZE);
-				board[yCoordToRow(selectedWire.y)][xCoordToCol(selectedWire.x)]
-						.addWire();
+				squareWires.set(yCoordToRow(selectedWire.y),
+						xCoordToCol(selectedWire.x), selectedWireIndex);
 			}
 
+			repaint(dirtyArea.union(selectedWire));
 			selectedWire = null;
 			selectedWireIndex = -1;
-			repaint();
 		}
 	}
 
@@ -830,6 +988,9 @@ public class LevelEditor extends JPanel implements MouseListener,
 		// Open button
 		else if (event.getSource() == openButton)
 			openFile();
+		// Size button
+		else if (event.getSource() == sizeButton)
+			changeSize();
 
 	}
 
@@ -0,0 +1,868 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * LevelFile - the contents of a ".op" level file: the size of the board and
+ * what is on each square. Both the levels and the level editor read and write
+ * their boards through it.
+ *
+ * The file starts with the number of items and the number of wires on a line
+ * each. A third line "rows cols inventoryCols = Board Size" gives the size of
+ * the board; files without it are 10 x 16 with 6 inventory columns. Then
+ * comes one token for every square, row by row: 'O' for an empty square, 'X'
+ * for a disabled square, 'W' for a wire, an item type for an item and a
+ * negative item type (-0 included) for an item on a wire.
+ *
+ * Files are read straight from their bytes in one pass, without making a
+ * String for each token, and anything that does not match this layout
+ * (including item and wire counts that do not match the squares) is rejected.
+ *
+ * Boards can also be kept in a binary ".opb" file: a 32 byte header (the
+ * letters "EBLV", the version, the flags, the board size, the number of items
+ * and wires and the number of bytes of squares that follow) and then one byte
+ * for every square, laid out the same way as in memory, which can be
+ * compressed. Big files are memory-mapped, and the squares of an uncompressed
+ * binary file are read where they are in the file until they are changed.
+ * Either kind of file is read by the same constructor.
+ *
+ * Files are saved by writing a new file next to them and moving it into their
+ * place, so a file that is still mapped is never written over
+ */
+public class LevelFile
+{
+	/* Constants */
+	// Default Board Size, for files that do not give their size
+	public static final int DEFAULT_ROWS = 10;
+	public static final int DEFAULT_COLS = 16;
+	public static final int DEFAULT_INVENTORY_COLS = 6;
+
+	// Largest Board Size
+	public static final int MAX_ROWS = 2048;
+	public static final int MAX_COLS = 2048;
+
+	// Each square is stored in a byte: the item type plus one (0 for no item)
+	// in the low bits and a bit for a wire and for a disabled square
+	private static final int ITEM_BITS = 0x0F;
+	private static final int WIRE = 0x10;
+	private static final int DISABLED = 0x20;
+
+	// Text after the numbers of the first lines
+	private static final String ITEMS_LABEL = "= Number of Items";
+	private static final String WIRES_LABEL = "= Number of Wires";
+	private static final String SIZE_LABEL = "= Board Size";
+
+	// File extensions of text and binary level files
+	public static final String TEXT_EXTENSION = ".op";
+	public static final String BINARY_EXTENSION = ".opb";
+
+	// Binary file header
+	private static final byte[] MAGIC = { 'E', 'B', 'L', 'V' };
+	private static final int BINARY_VERSION = 1;
+	private static final int HEADER_SIZE = 32;
+	private static final int COMPRESSED = 0x01;
+
+	// Files at least this big are memory-mapped instead of read
+	private static final int MAP_SIZE = 1 << 16;
+
+	/* Variables */
+	private int noOfRows;
+	private int noOfCols;
+	private int inventoryCols;
+
+	// One byte for every square, row by row. This is read-only while it is
+	// still the squares of a big binary file or a level pack, which are
+	// memory-mapped, and is copied the first time it is changed
+	private ByteBuffer squares;
+
+	/**
+	 * Constructs a new LevelFile of an empty board
+	 *
+	 * @param noOfRows the number of rows
+	 * @param noOfCols the number of columns, including the inventory
+	 * @param inventoryCols the number of inventory columns on the right
+	 */
+	public LevelFile(int noOfRows, int noOfCols, int inventoryCols)
+	{
+		checkSize(noOfRows, noOfCols, inventoryCols);
+		this.noOfRows = noOfRows;
+		this.noOfCols = noOfCols;
+		this.inventoryCols = inventoryCols;
+		squares = ByteBuffer.allocate(noOfRows * noOfCols);
+	}
+
+	/**
+	 * Constructs a new LevelFile by reading a ".op" or ".opb" file
+	 *
+	 * @param levelFile the file to be read
+	 * @throws FileNotFoundException if the file is not found
+	 */
+	public LevelFile(File levelFile) throws FileNotFoundException
+	{
+		this(readContents(levelFile));
+	}
+
+	/**
+	 * Constructs a new LevelFile from the contents of a ".op" or ".opb" file,
+	 * reading from the buffer's position to its limit
+	 *
+	 * @param contents the bytes of the file
+	 */
+	public LevelFile(ByteBuffer contents)
+	{
+		if (isBinary(contents))
+			readBinary(contents);
+		else
+			readText(contents);
+	}
+
+	/**
+	 * Reads the board from the contents of a ".op" file
+	 *
+	 * @param contents the bytes of the file
+	 */
+	private void readText(ByteBuffer contents)
+	{
+		// The number of items and wires, checked against the squares at the
+		// end
+		int expectedItems = readInt(contents);
+		readLabel(contents, ITEMS_LABEL);
+		int expectedWires = readInt(contents);
+		readLabel(contents, WIRES_LABEL);
+
+		// Read the board size if the file gives it. Otherwise the line is
+		// already the first row of the board
+		if (lineHasSize(contents))
+		{
+			noOfRows = readInt(contents);
+			noOfCols = readInt(contents);
+			inventoryCols = readInt(contents);
+			readLabel(contents, SIZE_LABEL);
+		}
+		else
+		{
+			noOfRows = DEFAULT_ROWS;
+			noOfCols = DEFAULT_COLS;
+			inventoryCols = DEFAULT_INVENTORY_COLS;
+		}
+		checkSize(noOfRows, noOfCols, inventoryCols);
+		byte[] squares = new byte[noOfRows * noOfCols];
+		this.squares = ByteBuffer.wrap(squares);
+
+		// Read one token for every square
+		int noOfItems = 0;
+		int noOfWires = 0;
+		for (int square = 0; square < squares.length; square++)
+		{
+			skipWhitespace(contents);
+			if (!contents.hasRemaining())
+				throw invalid(contents, "missing squares");
+			byte token = contents.get();
+
+			// 'X' is an disabled square
+			if (token == 'X')
+				squares[square] = DISABLED;
+			// 'W' is a wire by itself
+			else if (token == 'W')
+			{
+				squares[square] = WIRE;
+				noOfWires++;
+			}
+			// Otherwise there must be an item. If the number is negative
+			// there is also a wire (check the sign because -0 is a
+			// possibility)
+			else if (token != 'O')
+			{
+				boolean wire = token == '-';
+				if (!wire)
+					contents.position(contents.position() - 1);
+				int itemType = readDigits(contents);
+				if (itemType >= Item.OFF_FILE_NAMES.length)
+					throw invalid(contents, "invalid item type " + itemType);
+				squares[square] = (byte) (itemType + 1);
+				noOfItems++;
+				if (wire)
+				{
+					squares[square] |= WIRE;
+					noOfWires++;
+				}
+			}
+			// 'O' is for a completely empty square
+
+			// Each token must end at whitespace
+			if (contents.hasRemaining()
+					&& !isWhitespace(contents.get(contents.position())))
+				throw invalid(contents, "unexpected character");
+		}
+
+		// Nothing but whitespace may follow the board
+		skipWhitespace(contents);
+		if (contents.hasRemaining())
+			throw invalid(contents, "more squares than the board size");
+		if (noOfItems != expectedItems || noOfWires != expectedWires)
+			throw new IllegalArgumentException("Invalid level file: "
+					+ noOfItems + " items and " + noOfWires
+					+ " wires on the board, but the file says "
+					+ expectedItems + " and " + expectedWires);
+	}
+
+	/**
+	 * Determines whether or not the contents are a ".opb" file, from the
+	 * letters at their start
+	 *
+	 * @param contents the bytes of the file
+	 * @return whether or not the contents are binary
+	 */
+	private static boolean isBinary(ByteBuffer contents)
+	{
+		if (contents.remaining() < MAGIC.length)
+			return false;
+		for (int pos = 0; pos < MAGIC.length; pos++)
+			if (contents.get(contents.position() + pos) != MAGIC[pos])
+				return false;
+		return true;
+	}
+
+	/**
+	 * Reads the board from the contents of a ".opb" file. The squares of an
+	 * uncompressed file are kept where they are in the contents
+	 *
+	 * @param contents the bytes of the file
+	 */
+	private void readBinary(ByteBuffer contents)
+	{
+		if (contents.remaining() < HEADER_SIZE)
+			throw invalid(contents, "header too short");
+		contents.position(contents.position() + MAGIC.length);
+		int version = contents.getShort();
+		int flags = contents.getShort();
+		if (version < 1 || version > BINARY_VERSION)
+			throw invalid(contents, "unsupported version " + version);
+		if ((flags & ~COMPRESSED) != 0)
+			throw invalid(contents, "unknown flags " + flags);
+		noOfRows = contents.getInt();
+		noOfCols = contents.getInt();
+		inventoryCols = contents.getInt();
+		int expectedItems = contents.getInt();
+		int expectedWires = contents.getInt();
+		int squareBytes = contents.getInt();
+		checkSize(noOfRows, noOfCols, inventoryCols);
+		if (squareBytes != contents.remaining())
+			throw invalid(contents, squareBytes + " bytes of squares but "
+					+ contents.remaining() + " bytes left");
+
+		// Uncompress the squares, or use them where they are
+		int noOfSquares = noOfRows * noOfCols;
+		if ((flags & COMPRESSED) != 0)
+		{
+			byte[] compressed = new byte[squareBytes];
+			contents.get(compressed);
+			squares = ByteBuffer.wrap(inflate(compressed, noOfSquares));
+		}
+		else
+		{
+			if (squareBytes != noOfSquares)
+				throw invalid(contents, squareBytes
+						+ " bytes of squares for " + noOfSquares + " squares");
+			squares = contents.slice();
+		}
+
+		// Make sure each square is one that could have been written and
+		// count the items and wires
+		int noOfItems = 0;
+		int noOfWires = 0;
+		for (int square = 0; square < noOfSquares; square++)
+		{
+			int value = squares.get(square);
+			int itemType = (value & ITEM_BITS) - 1;
+			if ((value & ~(ITEM_BITS | WIRE | DISABLED)) != 0
+					|| (value & DISABLED) != 0 && value != DISABLED
+					|| itemType >= Item.OFF_FILE_NAMES.length)
+				throw new IllegalArgumentException("Invalid level file: "
+						+ "invalid square " + value + " at square " + square);
+			if (itemType != Square.EMPTY)
+				noOfItems++;
+			if ((value & WIRE) != 0)
+				noOfWires++;
+		}
+		if (noOfItems != expectedItems || noOfWires != expectedWires)
+			throw new IllegalArgumentException("Invalid level file: "
+					+ noOfItems + " items and " + noOfWires
+					+ " wires on the board, but the file says "
+					+ expectedItems + " and " + expectedWires);
+	}
+
+	/**
+	 * Uncompresses the squares of a compressed ".opb" file
+	 *
+	 * @param compressed the compressed squares
+	 * @param noOfSquares the number of squares there must be
+	 * @return the squares
+	 */
+	private static byte[] inflate(byte[] compressed, int noOfSquares)
+	{
+		Inflater inflater = new Inflater();
+		inflater.setInput(compressed);
+		byte[] squares = new byte[noOfSquares];
+		try
+		{
+			int length = 0;
+			while (length < noOfSquares && !inflater.finished())
+			{
+				int read = inflater.inflate(squares, length, noOfSquares
+						- length);
+				if (read == 0 && (inflater.needsInput()
+						|| inflater.needsDictionary()))
+					break;
+				length += read;
+			}
+			if (length != noOfSquares || !inflater.finished())
+				throw new IllegalArgumentException("Invalid level file: "
+						+ "compressed squares do not match the board size");
+		}
+		catch (DataFormatException e)
+		{
+			throw new IllegalArgumentException("Invalid level file: "
+					+ e.getMessage());
+		}
+		finally
+		{
+			inflater.end();
+		}
+		return squares;
+	}
+
+	/**
+	 * Reads the whole of a file into a buffer, memory-mapping it if it is big.
+	 * A mapping lasts until it is garbage collected, so mapped files are only
+	 * ever replaced through replaceFile
+	 *
+	 * @param levelFile the file to be read
+	 * @return the bytes of the file, ready to be read
+	 * @throws FileNotFoundException if the file is not found
+	 */
+	static ByteBuffer readContents(File levelFile)
+			throws FileNotFoundException
+	{
+		try (FileInputStream inFile = new FileInputStream(levelFile))
+		{
+			FileChannel channel = inFile.getChannel();
+			if (channel.size() >= MAP_SIZE)
+				return channel.map(FileChannel.MapMode.READ_ONLY, 0,
+						channel.size());
+			ByteBuffer contents = ByteBuffer.allocate((int) channel.size());
+			while (contents.hasRemaining() && channel.read(contents) != -1)
+				;
+			contents.flip();
+			return contents;
+		}
+		catch (FileNotFoundException e)
+		{
+			throw e;
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException(levelFile.getPath(), e);
+		}
+	}
+
+	/**
+	 * Determines whether or not a byte is whitespace between tokens
+	 *
+	 * @param character the byte
+	 * @return whether or not the byte is a space, tab or line break
+	 */
+	private static boolean isWhitespace(byte character)
+	{
+		return character == ' ' || character == '\t' || character == '\n'
+				|| character == '\r';
+	}
+
+	/**
+	 * Moves the buffer past any whitespace, line breaks included
+	 *
+	 * @param contents the bytes of the file
+	 */
+	private static void skipWhitespace(ByteBuffer contents)
+	{
+		while (contents.hasRemaining()
+				&& isWhitespace(contents.get(contents.position())))
+			contents.get();
+	}
+
+	/**
+	 * Moves the buffer past spaces and tabs on the current line
+	 *
+	 * @param contents the bytes of the file
+	 */
+	private static void skipSpaces(ByteBuffer contents)
+	{
+		while (contents.hasRemaining()
+				&& (contents.get(contents.position()) == ' ' || contents
+						.get(contents.position()) == '\t'))
+			contents.get();
+	}
+
+	/**
+	 * Reads a number that is not negative, after any spaces on the current
+	 * line
+	 *
+	 * @param contents the bytes of the file
+	 * @return the number
+	 */
+	private static int readInt(ByteBuffer contents)
+	{
+		skipSpaces(contents);
+		return readDigits(contents);
+	}
+
+	/**
+	 * Reads the digits of a number that is not negative
+	 *
+	 * @param contents the bytes of the file
+	 * @return the number
+	 */
+	private static int readDigits(ByteBuffer contents)
+	{
+		int number = 0;
+		int noOfDigits = 0;
+		while (contents.hasRemaining() && contents.get(contents.position()) >= '0'
+				&& contents.get(contents.position()) <= '9')
+		{
+			number = number * 10 + contents.get() - '0';
+			if (number > MAX_ROWS * MAX_COLS)
+				throw invalid(contents, "number too large");
+			noOfDigits++;
+		}
+		if (noOfDigits == 0)
+			throw invalid(contents, "expected a number");
+		return number;
+	}
+
+	/**
+	 * Reads the text after the number of a header line and the end of the
+	 * line
+	 *
+	 * @param contents the bytes of the file
+	 * @param label the text the line must end with
+	 */
+	private static void readLabel(ByteBuffer contents, String label)
+	{
+		skipSpaces(contents);
+		for (int pos = 0; pos < label.length(); pos++)
+			if (!contents.hasRemaining() || contents.get() != label.charAt(pos))
+				throw invalid(contents, "expected \"" + label + "\"");
+		skipSpaces(contents);
+
+		// The line ends with "\n" or "\r\n"
+		if (contents.hasRemaining() && contents.get(contents.position()) == '\r')
+			contents.get();
+		if (!contents.hasRemaining() || contents.get() != '\n')
+			throw invalid(contents, "expected the end of the line");
+	}
+
+	/**
+	 * Determines whether or not the current line gives the board size, which
+	 * is the only line of the board with an '='
+	 *
+	 * @param contents the bytes of the file
+	 * @return whether or not the line is the board size
+	 */
+	private static boolean lineHasSize(ByteBuffer contents)
+	{
+		for (int pos = contents.position(); pos < contents.limit()
+				&& contents.get(pos) != '\n'; pos++)
+			if (contents.get(pos) == '=')
+				return true;
+		return false;
+	}
+
+	/**
+	 * Makes the exception for a file that does not match the layout
+	 *
+	 * @param contents the bytes of the file, at the problem
+	 * @param problem what is wrong
+	 * @return the exception to throw
+	 */
+	private static IllegalArgumentException invalid(ByteBuffer contents,
+			String problem)
+	{
+		return new IllegalArgumentException("Invalid level file: " + problem
+				+ " at byte " + contents.position());
+	}
+
+	/**
+	 * Makes sure a board size is one the game can handle
+	 *
+	 * @param noOfRows the number of rows
+	 * @param noOfCols the number of columns
+	 * @param inventoryCols the number of inventory columns
+	 */
+	private static void checkSize(int noOfRows, int noOfCols, int inventoryCols)
+	{
+		if (noOfRows < 1 || noOfRows > MAX_ROWS || noOfCols < 1
+				|| noOfCols > MAX_COLS || inventoryCols < 0
+				|| inventoryCols >= noOfCols)
+			throw new IllegalArgumentException("Invalid board size: "
+					+ noOfRows + " x " + noOfCols + " with " + inventoryCols
+					+ " inventory columns");
+	}
+
+	/**
+	 * Writes the board to a ".op" file. The board size is only written if it
+	 * is not the default size, so default boards stay readable by older
+	 * versions
+	 *
+	 * @param levelFile the file to write to
+	 * @throws IOException if the file cannot be written
+	 */
+	public void write(File levelFile) throws IOException
+	{
+		// Make a brand new file next to the level file to handle overwriting
+		File newFile = newFile(levelFile);
+		PrintWriter outFile = new PrintWriter(new FileWriter(newFile, false));
+
+		// Print the number of items and wires on the first two lines
+		outFile.println(getNoOfItems() + " = Number of Items");
+		outFile.println(getNoOfWires() + " = Number of Wires");
+		if (noOfRows != DEFAULT_ROWS || noOfCols != DEFAULT_COLS
+				|| inventoryCols != DEFAULT_INVENTORY_COLS)
+			outFile.println(noOfRows + " " + noOfCols + " " + inventoryCols
+					+ " = Board Size");
+
+		// Print the characters that identify each square
+		for (int row = 0; row < noOfRows; row++)
+		{
+			for (int col = 0; col < noOfCols; col++)
+			{
+				int itemType = getItemType(row, col);
+				if (isDisabled(row, col))
+					outFile.print('X');
+				else if (itemType == Square.EMPTY)
+					outFile.print(hasWire(row, col) ? 'W' : 'O');
+				// Make the number negative if there is a wire and an item
+				else
+					outFile.print((hasWire(row, col) ? "-" : "") + itemType);
+				outFile.print(" ");
+			}
+			outFile.println();
+		}
+		outFile.close();
+		if (outFile.checkError())
+			throw new IOException("Could not write " + newFile.getPath());
+		replaceFile(newFile, levelFile);
+	}
+
+	/**
+	 * Writes the board to a ".opb" file
+	 *
+	 * @param levelFile the file to write to
+	 * @param compress whether or not to compress the squares
+	 * @throws IOException if the file cannot be written
+	 */
+	public void writeBinary(File levelFile, boolean compress)
+			throws IOException
+	{
+		byte[] squareBytes = new byte[noOfRows * noOfCols];
+		for (int square = 0; square < squareBytes.length; square++)
+			squareBytes[square] = squares.get(square);
+		int length = squareBytes.length;
+		if (compress)
+		{
+			Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+			deflater.setInput(squareBytes);
+			deflater.finish();
+			byte[] compressed = new byte[squareBytes.length + 64];
+			length = 0;
+			while (!deflater.finished())
+			{
+				if (length == compressed.length)
+					compressed = Arrays.copyOf(compressed,
+							compressed.length * 2);
+				length += deflater.deflate(compressed, length,
+						compressed.length - length);
+			}
+			deflater.end();
+			squareBytes = compressed;
+		}
+
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.put(MAGIC);
+		header.putShort((short) BINARY_VERSION);
+		header.putShort((short) (compress ? COMPRESSED : 0));
+		header.putInt(noOfRows);
+		header.putInt(noOfCols);
+		header.putInt(inventoryCols);
+		header.putInt(getNoOfItems());
+		header.putInt(getNoOfWires());
+		header.putInt(length);
+		header.flip();
+
+		// Make a brand new file next to the level file to handle overwriting
+		File newFile = newFile(levelFile);
+		try (FileOutputStream outFile = new FileOutputStream(newFile, false))
+		{
+			FileChannel channel = outFile.getChannel();
+			while (header.hasRemaining())
+				channel.write(header);
+			ByteBuffer body = ByteBuffer.wrap(squareBytes, 0, length);
+			while (body.hasRemaining())
+				channel.write(body);
+		}
+		replaceFile(newFile, levelFile);
+	}
+
+	/**
+	 * Names the file a new version of a file is written to before it takes
+	 * the file's place
+	 *
+	 * @param file the file to be replaced
+	 * @return the new file, next to the file
+	 */
+	static File newFile(File file)
+	{
+		return new File(file.getPath() + ".new");
+	}
+
+	/**
+	 * Puts a newly written file in the place of another file, so the file is
+	 * never seen half written and a memory-mapped file is never written over.
+	 * Some systems, such as Windows, will not replace a file while it is
+	 * mapped. Mappings only go away when they are garbage collected, so if
+	 * the file cannot be replaced the mappings no longer in use are collected
+	 * and it is tried once more
+	 *
+	 * @param newFile the newly written file
+	 * @param file the file to be replaced
+	 * @throws IOException if the file cannot be replaced
+	 */
+	static void replaceFile(File newFile, File file) throws IOException
+	{
+		try
+		{
+			moveFile(newFile, file);
+		}
+		catch (FileSystemException e)
+		{
+			System.gc();
+			System.runFinalization();
+			try
+			{
+				moveFile(newFile, file);
+			}
+			catch (IOException again)
+			{
+				newFile.delete();
+				throw again;
+			}
+		}
+	}
+
+	/**
+	 * Moves a file over another file, atomically if the file system can
+	 *
+	 * @param from the file to be moved
+	 * @param to the file to be replaced
+	 * @throws IOException if the file cannot be moved
+	 */
+	private static void moveFile(File from, File to) throws IOException
+	{
+		try
+		{
+			Files.move(from.toPath(), to.toPath(),
+					StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (AtomicMoveNotSupportedException e)
+		{
+			Files.move(from.toPath(), to.toPath(),
+					StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Writes the board to a file, as a ".opb" file if the file's name ends
+	 * with ".opb" and as a ".op" file otherwise
+	 *
+	 * @param levelFile the file to write to
+	 * @throws IOException if the file cannot be written
+	 */
+	public void save(File levelFile) throws IOException
+	{
+		if (levelFile.getName().endsWith(BINARY_EXTENSION))
+			writeBinary(levelFile, false);
+		else
+			write(levelFile);
+	}
+
+	/**
+	 * Gives access to the number of rows
+	 *
+	 * @return the number of rows
+	 */
+	public int getNoOfRows()
+	{
+		return noOfRows;
+	}
+
+	/**
+	 * Gives access to the number of columns, including the inventory
+	 *
+	 * @return the number of columns
+	 */
+	public int getNoOfCols()
+	{
+		return noOfCols;
+	}
+
+	/**
+	 * Gives access to the number of inventory columns on the right
+	 *
+	 * @return the number of inventory columns
+	 */
+	public int getInventoryCols()
+	{
+		return inventoryCols;
+	}
+
+	/**
+	 * Counts the items on the board
+	 *
+	 * @return the number of items
+	 */
+	public int getNoOfItems()
+	{
+		int noOfItems = 0;
+		for (int square = 0; square < squares.limit(); square++)
+			if ((squares.get(square) & ITEM_BITS) != 0)
+				noOfItems++;
+		return noOfItems;
+	}
+
+	/**
+	 * Counts the wires on the board
+	 *
+	 * @return the number of wires
+	 */
+	public int getNoOfWires()
+	{
+		int noOfWires = 0;
+		for (int square = 0; square < squares.limit(); square++)
+			if ((squares.get(square) & WIRE) != 0)
+				noOfWires++;
+		return noOfWires;
+	}
+
+	/**
+	 * Gives access to the type of the item on a square
+	 *
+	 * @param row the row of the square
+	 * @param col the column of the square
+	 * @return the item type, or Square.EMPTY if there is no item
+	 */
+	public int getItemType(int row, int col)
+	{
+		return (squares.get(row * noOfCols + col) & ITEM_BITS) - 1;
+	}
+
+	/**
+	 * Determines whether or not a square has a wire
+	 *
+	 * @param row the row of the square
+	 * @param col the column of the square
+	 * @return whether or not the square has a wire
+	 */
+	public boolean hasWire(int row, int col)
+	{
+		return (squares.get(row * noOfCols + col) & WIRE) != 0;
+	}
+
+	/**
+	 * Determines whether or not a square is disabled
+	 *
+	 * @param row the row of the square
+	 * @param col the column of the square
+	 * @return whether or not the square is disabled
+	 */
+	public boolean isDisabled(int row, int col)
+	{
+		return (squares.get(row * noOfCols + col) & DISABLED) != 0;
+	}
+
+	/**
+	 * Puts an item on a square, or takes it away
+	 *
+	 * @param row the row of the square
+	 * @param col the column of the square
+	 * @param itemType the item type, or Square.EMPTY for no item
+	 */
+	public void setItemType(int row, int col, int itemType)
+	{
+		if (itemType < Square.EMPTY || itemType >= Item.OFF_FILE_NAMES.length)
+			throw new IllegalArgumentException("Invalid item type: "
+					+ itemType);
+		int square = row * noOfCols + col;
+		squaresToSet().put(square,
+				(byte) (squares.get(square) & ~ITEM_BITS | itemType + 1));
+	}
+
+	/**
+	 * Puts a wire on a square, or takes it away
+	 *
+	 * @param row the row of the square
+	 * @param col the column of the square
+	 * @param wire whether or not the square has a wire
+	 */
+	public void setWire(int row, int col, boolean wire)
+	{
+		int square = row * noOfCols + col;
+		if (wire)
+			squaresToSet().put(square, (byte) (squares.get(square) | WIRE));
+		else
+			squaresToSet().put(square, (byte) (squares.get(square) & ~WIRE));
+	}
+
+	/**
+	 * Disables a square so no items can be placed on it
+	 *
+	 * @param row the row of the square
+	 * @param col the column of the square
+	 */
+	public void disable(int row, int col)
+	{
+		squaresToSet().put(row * noOfCols + col, (byte) DISABLED);
+	}
+
+	/**
+	 * Gives access to the squares so they can be changed, copying them out
+	 * of the memory-mapped file or level pack first if they are still there
+	 *
+	 * @return the squares
+	 */
+	private ByteBuffer squaresToSet()
+	{
+		if (squares.isReadOnly())
+		{
+			ByteBuffer copy = ByteBuffer.allocate(squares.limit());
+			squares.rewind();
+			copy.put(squares);
+			squares = copy;
+		}
+		return squares;
+	}
+}
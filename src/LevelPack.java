@@ -0,0 +1,198 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * LevelPack - many levels kept in one file with a table of where each level
+ * is, so the number of levels is known as soon as the pack is opened and a
+ * level is read by slicing it out of the pack instead of opening a file of
+ * its own. The pack is read once, memory-mapped if it is big, and only the
+ * levels that are played are ever read. The levels share the pack's bytes, so
+ * the pack is kept read-only and a level's squares are copied if they change.
+ *
+ * The pack starts with the letters "EBPK", the version and the number of
+ * levels, followed by the offset and length of every level in the pack. Each
+ * level is the bytes of a ".op" or ".opb" file
+ */
+public class LevelPack
+{
+	/* Constants */
+	// File name of the pack in the levels folder
+	public static final String PACK_FILE = "levels.pack";
+
+	// Pack header
+	private static final byte[] MAGIC = { 'E', 'B', 'P', 'K' };
+	private static final int PACK_VERSION = 1;
+	private static final int HEADER_SIZE = 12;
+	private static final int ENTRY_SIZE = 8;
+
+	/* Variables */
+	private ByteBuffer pack;
+	private int[] offsets;
+	private int[] lengths;
+
+	/**
+	 * Constructs a new LevelPack by opening a pack file and reading its table
+	 *
+	 * @param packFile the pack file
+	 * @throws FileNotFoundException if the file is not found
+	 */
+	public LevelPack(File packFile) throws FileNotFoundException
+	{
+		pack = LevelFile.readContents(packFile).asReadOnlyBuffer();
+
+		// Check the header
+		if (pack.limit() < HEADER_SIZE)
+			throw invalid("header too short");
+		for (int pos = 0; pos < MAGIC.length; pos++)
+			if (pack.get(pos) != MAGIC[pos])
+				throw invalid("not a level pack");
+		int version = pack.getShort(MAGIC.length);
+		if (version < 1 || version > PACK_VERSION)
+			throw invalid("unsupported version " + version);
+		int noOfLevels = pack.getInt(MAGIC.length + 4);
+		if (noOfLevels < 0
+				|| noOfLevels > (pack.limit() - HEADER_SIZE) / ENTRY_SIZE)
+			throw invalid(noOfLevels + " levels in the table");
+
+		// Read the table, making sure every level is inside the pack
+		int dataStart = HEADER_SIZE + noOfLevels * ENTRY_SIZE;
+		offsets = new int[noOfLevels];
+		lengths = new int[noOfLevels];
+		for (int level = 0; level < noOfLevels; level++)
+		{
+			int entry = HEADER_SIZE + level * ENTRY_SIZE;
+			offsets[level] = pack.getInt(entry);
+			lengths[level] = pack.getInt(entry + 4);
+			if (offsets[level] < dataStart || lengths[level] < 0
+					|| offsets[level] > pack.limit() - lengths[level])
+				throw invalid("level " + (level + 1) + " is outside the pack");
+		}
+	}
+
+	/**
+	 * Makes the exception for a pack that does not match the layout
+	 *
+	 * @param problem what is wrong
+	 * @return the exception to throw
+	 */
+	private static IllegalArgumentException invalid(String problem)
+	{
+		return new IllegalArgumentException("Invalid level pack: " + problem);
+	}
+
+	/**
+	 * Gives access to the number of levels in the pack
+	 *
+	 * @return the number of levels
+	 */
+	public int getNoOfLevels()
+	{
+		return offsets.length;
+	}
+
+	/**
+	 * Reads a level out of the pack
+	 *
+	 * @param levelNo the number of the level, starting at 1
+	 * @return the board of the level
+	 */
+	public LevelFile getLevel(int levelNo)
+	{
+		if (levelNo < 1 || levelNo > offsets.length)
+			throw new IllegalArgumentException("Invalid level number: "
+					+ levelNo);
+
+		// Slice a copy of the pack so levels can be read at the same time
+		ByteBuffer contents = pack.duplicate();
+		contents.limit(offsets[levelNo - 1] + lengths[levelNo - 1]);
+		contents.position(offsets[levelNo - 1]);
+		return new LevelFile(contents.slice());
+	}
+
+	/**
+	 * Writes level files into a pack file, in order
+	 *
+	 * @param packFile the pack file to write to
+	 * @param levelFiles the ".op" or ".opb" files of the levels
+	 * @throws IOException if a file cannot be read or written
+	 */
+	public static void write(File packFile, List<File> levelFiles)
+			throws IOException
+	{
+		// Read every level first, so the table can be written before them
+		int noOfLevels = levelFiles.size();
+		byte[][] levels = new byte[noOfLevels][];
+		ByteBuffer table = ByteBuffer.allocate(HEADER_SIZE + noOfLevels
+				* ENTRY_SIZE);
+		table.put(MAGIC);
+		table.putShort((short) PACK_VERSION);
+		table.putShort((short) 0);
+		table.putInt(noOfLevels);
+		long offset = table.capacity();
+		for (int level = 0; level < noOfLevels; level++)
+		{
+			levels[level] = Files.readAllBytes(levelFiles.get(level).toPath());
+			if (offset + levels[level].length > Integer.MAX_VALUE)
+				throw new IOException("Level pack is too big");
+			table.putInt((int) offset);
+			table.putInt(levels[level].length);
+			offset += levels[level].length;
+		}
+		table.flip();
+
+		// Write a new file next to the pack and then put it in the pack's
+		// place, so the pack is never seen half written and the pack is never
+		// written over while it is mapped
+		File newFile = LevelFile.newFile(packFile);
+		try (FileOutputStream outFile = new FileOutputStream(newFile, false))
+		{
+			FileChannel channel = outFile.getChannel();
+			while (table.hasRemaining())
+				channel.write(table);
+			for (byte[] level : levels)
+			{
+				ByteBuffer contents = ByteBuffer.wrap(level);
+				while (contents.hasRemaining())
+					channel.write(contents);
+			}
+		}
+		LevelFile.replaceFile(newFile, packFile);
+	}
+
+	/**
+	 * Packs the files given, or every level file in the levels folder (level1,
+	 * level2 and so on) into the levels folder's pack if no files are given
+	 *
+	 * @param args the pack file and then the level files to put in it
+	 *            (optional)
+	 * @throws IOException if a file cannot be read or written
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		File packFile = new File(Main.LEVEL_FOLDER, PACK_FILE);
+		List<File> levelFiles = new ArrayList<File>();
+		if (args.length > 0)
+		{
+			packFile = new File(args[0]);
+			for (int arg = 1; arg < args.length; arg++)
+				levelFiles.add(new File(args[arg]));
+		}
+		else
+		{
+			File levelFile;
+			while ((levelFile = Main.findLevelFile(levelFiles.size() + 1)) != null)
+				levelFiles.add(levelFile);
+		}
+
+		write(packFile, levelFiles);
+		System.out.println(levelFiles.size() + " levels packed into "
+				+ packFile.getPath());
+	}
+}
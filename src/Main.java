@@ -27,6 +27,7 @@ import javax.swing.JMenuItem;
 import javax.swing.JComboBox;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.JScrollPane;
 import javax.swing.KeyStroke;
 
 /**
@@ -47,15 +48,24 @@ public class Main extends JFrame implements ActionListener
 	private static final int EDITOR = 1;
 	private static final int LEVEL = 2;
 
+	// Folder of the level files and the level pack
+	public static final String LEVEL_FOLDER = "./levels";
+
 	/* Variables */
 	public static int noOfLevels;
 	public static int state;
 
+	// The level pack, opened the first time it is needed, and the catalog of
+	// the levels
+	private static LevelPack levelPack;
+	private static boolean levelPackOpened;
+	private static LevelCatalog levelCatalog;
+
 	// Menus and menu items
 	private JMenuItem mainMenuOption, exitOption, instructionsMenuItem,
 			aboutMenuItem;
-	private JComboBox<String> levelSelect;
-	private String[] levels;
+	private JComboBox<LevelCatalog.Entry> levelSelect;
+	private LevelCatalog.Entry[] levels;
 
 	// Panels
 	public static Level level;
@@ -63,6 +73,9 @@ public class Main extends JFrame implements ActionListener
 	private Menu menu;
 	private JPanel panelTop, panelBot, panelLeft, panelRight;
 
+	// Scrolls the level or editor when its board is bigger than the frame
+	private JScrollPane boardPane;
+
 	/**
 	 * Constructs the main program frame
 	 * 
@@ -77,8 +90,10 @@ public class Main extends JFrame implements ActionListener
 		contentPane.setLayout(new BorderLayout());
 
 		// Corner icon image
-		setIconImage(Toolkit.getDefaultToolkit().getImage(
-				"./images/lightBulbOn.png"));
+		setIconImage(SpriteCache.getImage("lightBulbOn.png"));
+
+		// Start reading the levels in the background
+		getLevelCatalog();
 
 		// Put the frame in the centre of the monitor near the top
 		Dimension screen = Toolkit.getDefaultToolkit().getScreenSize();
@@ -156,15 +171,22 @@ public class Main extends JFrame implements ActionListener
 	 */
 	private void loadLevel() throws FileNotFoundException
 	{
-		// Create a JOptionPane and combine it with a JComboBox that lists all
-		// of the levels to select a level
-		checkNoOfLevels();
-		levels = new String[noOfLevels];
-
-		for (int level = 0; level < levels.length; level++)
-			levels[level] = "Level " + (level + 1);
+		// The levels are read in the background, so they may not all be
+		// there yet
+		levels = getLevelCatalog().getLevels();
+		noOfLevels = levels.length;
+		if (levels.length == 0)
+		{
+			JOptionPane.showMessageDialog(null,
+					getLevelCatalog().isBuilt() ? "There are no levels to play."
+							: "The levels are still loading. Please try again.",
+					"Select a level", JOptionPane.INFORMATION_MESSAGE);
+			return;
+		}
 
-		levelSelect = new JComboBox<String>(levels);
+		// Create a JOptionPane and combine it with a JComboBox that lists all
+		// of the levels with the size of their boards to select a level
+		levelSelect = new JComboBox<LevelCatalog.Entry>(levels);
 		levelSelect.setSelectedIndex(0);
 		int reply = JOptionPane.showConfirmDialog(null, levelSelect,
 				"Select a level", JOptionPane.OK_CANCEL_OPTION,
@@ -179,8 +201,9 @@ public class Main extends JFrame implements ActionListener
 			// Add the level to the frame
 			remove(menu);
 			loadBorderPanels();
-			level = new Level(levelSelect.getSelectedIndex() + 1);
-			add(level, BorderLayout.CENTER);
+			level = new Level(((LevelCatalog.Entry) levelSelect
+					.getSelectedItem()).getLevelNo());
+			loadBoardPane(level);
 			level.requestFocus();
 			revalidate();
 			repaint();
@@ -199,7 +222,34 @@ public class Main extends JFrame implements ActionListener
 		remove(menu);
 		loadBorderPanels();
 		levelEditor = new LevelEditor();
-		add(levelEditor, BorderLayout.CENTER);
+		loadBoardPane(levelEditor);
+		revalidate();
+		repaint();
+	}
+
+	/**
+	 * Adds a level or editor panel to the frame inside a scroll pane, which
+	 * only shows its scroll bars for boards bigger than the default size
+	 * 
+	 * @param boardPanel the level or editor panel
+	 */
+	private void loadBoardPane(JPanel boardPanel)
+	{
+		boardPane = new JScrollPane(boardPanel);
+		boardPane.setBorder(null);
+		add(boardPane, BorderLayout.CENTER);
+	}
+
+	/**
+	 * Replaces the level or editor panel in the frame with another one, such
+	 * as the next level once a level is complete
+	 * 
+	 * @param boardPanel the new level or editor panel
+	 */
+	public void replaceBoardPane(JPanel boardPanel)
+	{
+		remove(boardPane);
+		loadBoardPane(boardPanel);
 		revalidate();
 		repaint();
 	}
@@ -219,7 +269,8 @@ public class Main extends JFrame implements ActionListener
 		panelTop = new JPanel(new BorderLayout());
 
 		// Add the inventory title
-		ImageIcon inventoryTitle = new ImageIcon("./images/inventoryTitle.png");
+		ImageIcon inventoryTitle = new ImageIcon(
+				SpriteCache.getImage("inventoryTitle.png"));
 		JLabel label = new JLabel("", inventoryTitle, JLabel.CENTER);
 		panelTop.add(label, BorderLayout.EAST);
 
@@ -274,21 +325,116 @@ public class Main extends JFrame implements ActionListener
 								+ "\nof energy and convert energy back to electricity."
 								+ "\n\nUse these items by dragging them onto a square with wires on it. "
 								+ "\nTurn on and off the source box by clicking on it or using the space bar."
+								+ "\nPress S to change the speed of the power, or F to skip to where it settles."
 								+ "\nYou pass the level when the target box turns on.",
 						"Instructions",
 						JOptionPane.INFORMATION_MESSAGE);
 	}
 
 	/**
-	 * Checks the number of levels by counting ".op" files
+	 * Checks the number of levels: the levels in the level pack followed by
+	 * the level files numbered after them, such as levels saved by the editor
+	 * since the pack was made. The number comes from the level catalog, so
+	 * the disk is not touched, and is 0 until the catalog is built
 	 */
 	public static void checkNoOfLevels()
 	{
-		noOfLevels = 0;
-		File directory = new File("./levels");
-		for (File file : directory.listFiles())
-			if (file.isFile() && file.getAbsolutePath().endsWith(".op"))
-				noOfLevels++;
+		noOfLevels = getLevelCatalog().getNoOfLevels();
+	}
+
+	/**
+	 * Gives access to the catalog of the levels, starting it the first time
+	 *
+	 * @return the level catalog
+	 */
+	public static synchronized LevelCatalog getLevelCatalog()
+	{
+		if (levelCatalog == null)
+			levelCatalog = new LevelCatalog(new File(LEVEL_FOLDER));
+		return levelCatalog;
+	}
+
+	/**
+	 * Gives access to the level pack in the levels folder, opening it the
+	 * first time
+	 *
+	 * @return the level pack, or null if there is none
+	 */
+	public static synchronized LevelPack getLevelPack()
+	{
+		if (!levelPackOpened)
+		{
+			levelPackOpened = true;
+			File packFile = new File(LEVEL_FOLDER, LevelPack.PACK_FILE);
+			if (packFile.isFile())
+				try
+				{
+					levelPack = new LevelPack(packFile);
+				}
+				catch (FileNotFoundException e)
+				{
+					e.printStackTrace();
+				}
+				// The levels' own files are used instead of a broken pack
+				catch (IllegalArgumentException e)
+				{
+					e.printStackTrace();
+				}
+		}
+		return levelPack;
+	}
+
+	/**
+	 * Makes the level pack be opened again the next time it is needed, after
+	 * the pack file changed
+	 */
+	public static synchronized void reopenLevelPack()
+	{
+		levelPack = null;
+		levelPackOpened = false;
+	}
+
+	/**
+	 * Finds the file of a level in the levels folder. If the level has both a
+	 * binary and a text file, the one saved last is used so a level edited
+	 * after it was converted is not hidden by its old binary file
+	 *
+	 * @param levelNo the number of the level
+	 * @return the ".opb" or ".op" file of the level, or null if there is none
+	 */
+	public static File findLevelFile(int levelNo)
+	{
+		File binaryFile = new File(LEVEL_FOLDER, "level" + levelNo
+				+ LevelFile.BINARY_EXTENSION);
+		File textFile = new File(LEVEL_FOLDER, "level" + levelNo
+				+ LevelFile.TEXT_EXTENSION);
+		if (!textFile.isFile())
+			return binaryFile.isFile() ? binaryFile : null;
+		if (!binaryFile.isFile()
+				|| textFile.lastModified() > binaryFile.lastModified())
+			return textFile;
+		return binaryFile;
+	}
+
+	/**
+	 * Reads the board of a level from the level's own file if it has one, so
+	 * a level saved after the pack was made is not hidden by the pack, and
+	 * from the level pack otherwise
+	 *
+	 * @param levelNo the number of the level
+	 * @return the board of the level
+	 * @throws FileNotFoundException if the level is not found
+	 */
+	public static LevelFile loadLevelFile(int levelNo)
+			throws FileNotFoundException
+	{
+		File levelFile = findLevelFile(levelNo);
+		if (levelFile != null)
+			return new LevelFile(levelFile);
+		LevelPack pack = getLevelPack();
+		if (pack != null && levelNo >= 1 && levelNo <= pack.getNoOfLevels())
+			return pack.getLevel(levelNo);
+		throw new FileNotFoundException("Level " + levelNo);
 	}
 
 	/**
@@ -302,14 +448,9 @@ public class Main extends JFrame implements ActionListener
 		if (event.getSource() == mainMenuOption)
 		{
 			// Remove the current panel and load the menu
-			if (state == LEVEL)
+			if (state == LEVEL || state == EDITOR)
 			{
-				remove(level);
-				removeBorderPanels();
-			}
-			else if (state == EDITOR)
-			{
-				remove(levelEditor);
+				remove(boardPane);
 				removeBorderPanels();
 			}
 
@@ -363,6 +504,10 @@ public class Main extends JFrame implements ActionListener
 		// Dimension
 		private final Dimension SIZE = new Dimension(1020, 720);
 
+		// Button Colours: grey when not hovered and blue when hovered
+		private final Color BUTTON_COLOUR = new Color(162, 164, 176);
+		private final Color HOVERED_BUTTON_COLOUR = new Color(124, 140, 222);
+
 		// Button Indexes
 		private final int BUTTON_PLAY = 0;
 		private final int BUTTON_EDITOR = 1;
@@ -397,7 +542,7 @@ public class Main extends JFrame implements ActionListener
 		private void loadMenu()
 		{
 			// Menu image
-			menuImage = new ImageIcon("./images/mainMenu.png").getImage();
+			menuImage = SpriteCache.getImage("mainMenu.png");
 
 			// Buttons
 			buttons = new Rectangle[4];
@@ -417,8 +562,7 @@ public class Main extends JFrame implements ActionListener
 			super.paintComponent(g);
 
 			// Grey colour for unselected button
-			Color notSelected = new Color(162, 164, 176);
-			g.setColor(notSelected);
+			g.setColor(BUTTON_COLOUR);
 
 			// Draw the buttons
 			for (Rectangle button : buttons)
@@ -427,8 +571,7 @@ public class Main extends JFrame implements ActionListener
 			// Highlight hovered buttons blue
 			if (selectedRectangle != null)
 			{
-				Color selected = new Color(124, 140, 222);
-				g.setColor(selected);
+				g.setColor(HOVERED_BUTTON_COLOUR);
 				g.fillRect(selectedRectangle.x, selectedRectangle.y,
 						selectedRectangle.width, selectedRectangle.height);
 			}
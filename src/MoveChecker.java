@@ -0,0 +1,147 @@
+import java.io.FileNotFoundException;
+import java.util.Random;
+
+/**
+ * MoveChecker - checks that a board caught up after a single item is moved
+ * ends up exactly as if it was simulated again from the start. Random items
+ * are moved one at a time to random empty squares, including the inventory,
+ * on powered boards that have settled, and after every move the board is
+ * compared with a new simulation of the same placement
+ */
+public class MoveChecker
+{
+	/* Variables */
+	private int noOfMoves;
+	private int noOfDifferences;
+	private long catchUpTime;
+	private long rebuildTime;
+
+	/**
+	 * Moves random items on a board, checking the board after every move
+	 *
+	 * @param levelFile the board to be checked
+	 * @param moves the number of moves to make
+	 * @param random where the moves come from
+	 */
+	public void check(LevelFile levelFile, int moves, Random random)
+	{
+		Simulation simulation = new Simulation(levelFile);
+		simulation.runToFixpoint();
+
+		for (int move = 0; move < moves; move++)
+		{
+			// Pick an item the player could move and an empty square for it
+			int itemIndex = random.nextInt(simulation.getNoOfItems());
+			if (simulation.isItemLocked(itemIndex))
+				continue;
+			int row = random.nextInt(simulation.getNoOfRows());
+			int col = random.nextInt(simulation.getNoOfCols());
+			if (simulation.getItemIndex(row, col) != Square.EMPTY)
+				continue;
+
+			// Remember where the items were just after the move, since
+			// teleported items can move again while the board catches up
+			int[] itemRows = new int[simulation.getNoOfItems()];
+			int[] itemCols = new int[simulation.getNoOfItems()];
+			for (int item = 0; item < itemRows.length; item++)
+			{
+				itemRows[item] = simulation.getItemRow(item);
+				itemCols[item] = simulation.getItemCol(item);
+			}
+			itemRows[itemIndex] = row;
+			itemCols[itemIndex] = col;
+
+			long startTime = System.nanoTime();
+			simulation.moveItem(itemIndex, row, col);
+			catchUpTime += System.nanoTime() - startTime;
+
+			// Simulate the same placement from the start
+			startTime = System.nanoTime();
+			Simulation rebuilt = new Simulation(levelFile);
+			for (int item = 0; item < itemRows.length; item++)
+				rebuilt.removeItem(item);
+			for (int item = 0; item < itemRows.length; item++)
+				rebuilt.placeItem(item, itemRows[item], itemCols[item]);
+			rebuilt.runToFixpoint();
+			rebuildTime += System.nanoTime() - startTime;
+
+			noOfMoves++;
+			if (!simulation.isSameState(rebuilt))
+				noOfDifferences++;
+		}
+	}
+
+	/**
+	 * Gives access to the number of moves checked so far
+	 *
+	 * @return the number of moves
+	 */
+	public int getNoOfMoves()
+	{
+		return noOfMoves;
+	}
+
+	/**
+	 * Gives access to the number of moves after which the caught up board was
+	 * not the same as the rebuilt one
+	 *
+	 * @return the number of differences
+	 */
+	public int getNoOfDifferences()
+	{
+		return noOfDifferences;
+	}
+
+	/**
+	 * Describes the moves checked so far and how long catching up took
+	 * compared with simulating again from the start
+	 *
+	 * @return the description of the check
+	 */
+	public String toString()
+	{
+		return noOfMoves + " moves, " + noOfDifferences + " different, "
+				+ catchUpTime / Math.max(noOfMoves, 1) / 1000
+				+ " us to catch up and "
+				+ rebuildTime / Math.max(noOfMoves, 1) / 1000
+				+ " us to rebuild per move";
+	}
+
+	/**
+	 * Checks every level, printing how each one did
+	 *
+	 * @param args the number of moves to make on each level and the seed of
+	 *            the moves (optional)
+	 */
+	public static void main(String[] args)
+	{
+		int moves = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+		Random random = args.length > 1 ? new Random(Long.parseLong(args[1]))
+				: new Random();
+
+		MoveChecker total = new MoveChecker();
+		for (int levelNo = 1;; levelNo++)
+		{
+			LevelFile levelFile;
+			try
+			{
+				levelFile = Main.loadLevelFile(levelNo);
+			}
+			catch (FileNotFoundException e)
+			{
+				break;
+			}
+
+			MoveChecker level = new MoveChecker();
+			level.check(levelFile, moves, random);
+			System.out.println("Level " + levelNo + ": " + level);
+			total.noOfMoves += level.noOfMoves;
+			total.noOfDifferences += level.noOfDifferences;
+			total.catchUpTime += level.catchUpTime;
+			total.rebuildTime += level.rebuildTime;
+		}
+		System.out.println("All levels: " + total);
+		if (total.noOfDifferences > 0)
+			System.exit(1);
+	}
+}
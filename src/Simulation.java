@@ -0,0 +1,1692 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Simulation - the headless engine that loads a level from a ".op" file and
+ * handles the manipulation of electricity and energies. It needs no display
+ * or timers so a board can be simulated as fast as the processor allows. The
+ * Level panel is only a view over a simulation
+ */
+public class Simulation
+{
+	/* Constants */
+	// Board Size
+	public static final int SQUARE_SIZE = 60;
+
+	// Number of wire conductions in each step, one for every short tick of
+	// the level's timers that happens during a long tick
+	public static final int CONDUCTIONS_PER_STEP = 4;
+
+	// The most steps to run while looking for a fixpoint
+	public static final int MAX_STEPS = 1000;
+
+	// Starting size of the queues used while catching up a move
+	private static final int QUEUE_SIZE = 64;
+
+	// Item type that converts each type of energy back to electricity, the
+	// reverse of Item.CONVERTED_ENERGY
+	private static final int[] CONVERTERS = new int[Square.NO_OF_STATES];
+	static
+	{
+		Arrays.fill(CONVERTERS, Square.EMPTY);
+		for (int itemType = 0; itemType < Item.CONVERTED_ENERGY.length; itemType++)
+			if (Item.CONVERTED_ENERGY[itemType] != Item.NO_ENERGY)
+				CONVERTERS[Item.CONVERTED_ENERGY[itemType]] = itemType;
+	}
+
+	/* Variables */
+	// Board size. Only the columns left of the inventory are played on
+	private int noOfRows;
+	private int noOfCols;
+	private int inventoryCols;
+	private int playCols;
+
+	private boolean powerOn;
+	private boolean changed;
+	private boolean settled;
+
+	// Number of steps in the cycle the board was last found repeating, or 0
+	private int period;
+
+	// The index of the item on each square (or Square.EMPTY or
+	// Square.DISABLED) and the type of the item on each square (or
+	// Square.EMPTY). Only the chunks of the board that hold items are stored,
+	// so big boards that are mostly empty stay small
+	private ChunkedBoard squareItems;
+	private ChunkedBoard squareTypes;
+
+	// Bits of the squares with each type of energy, with wires, with items,
+	// with each type of item and with items that block light or water
+	private BitBoard[] energyLayers;
+	private BitBoard wireMask;
+	private BitBoard itemMask;
+	private BitBoard[] itemTypeMasks;
+	private BitBoard lightBlockers;
+	private BitBoard waterBlockers;
+
+	// The light and water blockers again with rows and columns swapped, so a
+	// column can be searched for its next blocker the same way as a row
+	private BitBoard lightColBlockers;
+	private BitBoard waterColBlockers;
+
+	// Registry of the powered Teleport Receivers with an empty square above
+	// them and of the rows that have at least one, kept up to date as items
+	// move and switch on or off
+	private BitBoard openReceivers;
+	private BitBoard openReceiverRows;
+
+	// Items
+	private int noOfItems;
+	private int[] itemTypes;
+	private int[] itemStates;
+	private int[] itemRows;
+	private int[] itemCols;
+	private boolean[] itemLocked;
+
+	// Wires
+	private int noOfWires;
+	private int[] wireRows;
+	private int[] wireCols;
+
+	// Wire components and whether each has electricity. Wires never move
+	// once the board is loaded, so every wire square is always in a component
+	private WireNetwork network;
+	private boolean[] componentPowered;
+
+	// Worklist of components that gained electricity and have not passed it
+	// to their squares yet
+	private int[] pendingComponents;
+	private int noOfPending;
+
+	// While a moved item is being caught up, the squares whose item just
+	// gained electricity and the squares whose converter just gained energy
+	private boolean propagating;
+	private int[] activatingSquares;
+	private int noOfActivating;
+	private BitBoard activatingMask;
+	private int[] convertingSquares;
+	private int noOfConverting;
+	private BitBoard convertingMask;
+
+	// The squares that lost electricity while a moved item is being caught up
+	// and the rows and columns whose energy was cleared
+	private int[] lostSquares;
+	private int noOfLost;
+	private boolean[] clearedLightRows;
+	private boolean[] clearedLightCols;
+	private boolean[] clearedWaterCols;
+
+	// The squares radios have transmitted from and the 2D difference array
+	// of their 5x5 ranges ((noOfRows + 1) x (playCols + 1)). The prefix
+	// sums of the differences count the radios covering each square. The
+	// sums are only worked out again inside the box of ranges that changed,
+	// and only the chunks near radios are ever stored
+	private BitBoard radioSources;
+	private ChunkedBoard radioDifferences;
+	private ChunkedBoard radioCounts;
+	private boolean radioCoverageChanged;
+	private int changedFromRow, changedToRow, changedFromCol, changedToCol;
+
+	/**
+	 * Constructs a new Simulation object from a level file
+	 *
+	 * @param levelFile the ".op" file to load the board from
+	 * @throws FileNotFoundException if the file is not found
+	 */
+	public Simulation(File levelFile) throws FileNotFoundException
+	{
+		this(new LevelFile(levelFile));
+	}
+
+	/**
+	 * Constructs a new Simulation object from a board that is already read or
+	 * was made in memory
+	 *
+	 * @param levelFile the board to be simulated
+	 */
+	public Simulation(LevelFile levelFile)
+	{
+		noOfRows = levelFile.getNoOfRows();
+		noOfCols = levelFile.getNoOfCols();
+		inventoryCols = levelFile.getInventoryCols();
+		playCols = noOfCols - inventoryCols;
+
+		loadSquares();
+		loadObjects(levelFile);
+		loadNetwork();
+
+		// Each square can only be queued once while catching up a move. The
+		// queues grow as needed so big boards only pay for what moves
+		activatingSquares = new int[QUEUE_SIZE];
+		activatingMask = new BitBoard(noOfRows, noOfCols);
+		convertingSquares = new int[QUEUE_SIZE];
+		convertingMask = new BitBoard(noOfRows, noOfCols);
+		lostSquares = new int[QUEUE_SIZE];
+		radioSources = new BitBoard(noOfRows, noOfCols);
+		clearedLightRows = new boolean[noOfRows];
+		clearedLightCols = new boolean[noOfCols];
+		clearedWaterCols = new boolean[noOfCols];
+	}
+
+	/**
+	 * Initializes the squares and the bit boards
+	 */
+	private void loadSquares()
+	{
+		squareItems = new ChunkedBoard(noOfRows, noOfCols, Square.EMPTY);
+		squareTypes = new ChunkedBoard(noOfRows, noOfCols, Square.EMPTY);
+		radioDifferences = new ChunkedBoard(noOfRows + 1, playCols + 1, 0);
+		radioCounts = new ChunkedBoard(noOfRows, playCols, 0);
+
+		energyLayers = new BitBoard[Square.NO_OF_STATES];
+		for (int energyType = 0; energyType < Square.NO_OF_STATES; energyType++)
+			energyLayers[energyType] = new BitBoard(noOfRows, noOfCols);
+		wireMask = new BitBoard(noOfRows, noOfCols);
+		itemMask = new BitBoard(noOfRows, noOfCols);
+		itemTypeMasks = new BitBoard[Item.OFF_FILE_NAMES.length];
+		for (int itemType = 0; itemType < itemTypeMasks.length; itemType++)
+			itemTypeMasks[itemType] = new BitBoard(noOfRows, noOfCols);
+		lightBlockers = new BitBoard(noOfRows, noOfCols);
+		waterBlockers = new BitBoard(noOfRows, noOfCols);
+		lightColBlockers = new BitBoard(noOfCols, noOfRows);
+		waterColBlockers = new BitBoard(noOfCols, noOfRows);
+		openReceivers = new BitBoard(noOfRows, noOfCols);
+		openReceiverRows = new BitBoard(1, noOfRows);
+	}
+
+	/**
+	 * Loads the items and wires from the level file
+	 *
+	 * @param levelFile the board to be loaded
+	 */
+	private void loadObjects(LevelFile levelFile)
+	{
+		// Make room for the items and wires
+		noOfItems = levelFile.getNoOfItems();
+		noOfWires = levelFile.getNoOfWires();
+		itemTypes = new int[noOfItems];
+		itemStates = new int[noOfItems];
+		itemRows = new int[noOfItems];
+		itemCols = new int[noOfItems];
+		itemLocked = new boolean[noOfItems];
+		wireRows = new int[noOfWires];
+		wireCols = new int[noOfWires];
+		int itemNo = 0;
+		int wireNo = 0;
+
+		// Add each item and wire to the board
+		for (int row = 0; row < noOfRows; row++)
+			for (int col = 0; col < noOfCols; col++)
+			{
+				if (levelFile.isDisabled(row, col))
+					squareItems.set(row, col, Square.DISABLED);
+
+				if (levelFile.hasWire(row, col))
+				{
+					wireRows[wireNo] = row;
+					wireCols[wireNo++] = col;
+					wireMask.set(row, col);
+				}
+
+				int itemType = levelFile.getItemType(row, col);
+				if (itemType != Square.EMPTY)
+				{
+					itemTypes[itemNo] = itemType;
+					itemStates[itemNo] = Item.STATE_OFF;
+
+					// Lock the item if it is not on the inventory
+					itemLocked[itemNo] = itemType == Item.SOURCE
+							|| itemType == Item.TARGET || col < playCols;
+
+					placeItem(itemNo++, row, col);
+				}
+			}
+	}
+
+	/**
+	 * Builds the wire components of the board
+	 */
+	private void loadNetwork()
+	{
+		network = new WireNetwork(wireMask, playCols);
+
+		// Each component can only gain electricity once while the power is on
+		componentPowered = new boolean[network.getNoOfComponents()];
+		pendingComponents = new int[network.getNoOfComponents()];
+		noOfPending = 0;
+	}
+
+	/**
+	 * Gives access to the index of the item on a square
+	 *
+	 * @param row the row of the square
+	 * @param col the column of the square
+	 * @return the item index, or Square.EMPTY or Square.DISABLED
+	 */
+	public int getItemIndex(int row, int col)
+	{
+		return squareItems.get(row, col);
+	}
+
+	/**
+	 * Gives access to the number of rows of the board
+	 *
+	 * @return the number of rows
+	 */
+	public int getNoOfRows()
+	{
+		return noOfRows;
+	}
+
+	/**
+	 * Gives access to the number of columns of the board, including the
+	 * inventory
+	 *
+	 * @return the number of columns
+	 */
+	public int getNoOfCols()
+	{
+		return noOfCols;
+	}
+
+	/**
+	 * Gives access to the number of inventory columns on the right of the
+	 * board
+	 *
+	 * @return the number of inventory columns
+	 */
+	public int getInventoryCols()
+	{
+		return inventoryCols;
+	}
+
+	/**
+	 * Gives access to the number of columns that are played on
+	 *
+	 * @return the number of columns left of the inventory
+	 */
+	public int getPlayCols()
+	{
+		return playCols;
+	}
+
+	/**
+	 * Gives access to the number of items on the board and in the inventory
+	 *
+	 * @return the number of items
+	 */
+	public int getNoOfItems()
+	{
+		return noOfItems;
+	}
+
+	/**
+	 * Gives access to the type of an item
+	 *
+	 * @param itemIndex the index of the item
+	 * @return the type of the item
+	 */
+	public int getItemType(int itemIndex)
+	{
+		return itemTypes[itemIndex];
+	}
+
+	/**
+	 * Gives access to the on/off state of an item
+	 *
+	 * @param itemIndex the index of the item
+	 * @return the on/off state of the item
+	 */
+	public int getItemState(int itemIndex)
+	{
+		return itemStates[itemIndex];
+	}
+
+	/**
+	 * Gives access to the row an item is on
+	 *
+	 * @param itemIndex the index of the item
+	 * @return the row of the item
+	 */
+	public int getItemRow(int itemIndex)
+	{
+		return itemRows[itemIndex];
+	}
+
+	/**
+	 * Gives access to the column an item is on
+	 *
+	 * @param itemIndex the index of the item
+	 * @return the column of the item
+	 */
+	public int getItemCol(int itemIndex)
+	{
+		return itemCols[itemIndex];
+	}
+
+	/**
+	 * Gives access to whether or not an item is movable
+	 *
+	 * @param itemIndex the index of the item
+	 * @return the move-ability of the item
+	 */
+	public boolean isItemLocked(int itemIndex)
+	{
+		return itemLocked[itemIndex];
+	}
+
+	/**
+	 * Gives access to the number of wires on the board
+	 *
+	 * @return the number of wires
+	 */
+	public int getNoOfWires()
+	{
+		return noOfWires;
+	}
+
+	/**
+	 * Gives access to the row a wire is on
+	 *
+	 * @param wireIndex the index of the wire
+	 * @return the row of the wire
+	 */
+	public int getWireRow(int wireIndex)
+	{
+		return wireRows[wireIndex];
+	}
+
+	/**
+	 * Gives access to the column a wire is on
+	 *
+	 * @param wireIndex the index of the wire
+	 * @return the column of the wire
+	 */
+	public int getWireCol(int wireIndex)
+	{
+		return wireCols[wireIndex];
+	}
+
+	/**
+	 * Determines whether or not a square has electricity. Wire squares have
+	 * electricity when their component does
+	 *
+	 * @param row the row of the square
+	 * @param col the column of the square
+	 * @return whether or not the square has electricity
+	 */
+	public boolean hasElectricity(int row, int col)
+	{
+		if (wireMask.get(row, col))
+			return componentPowered[network.getComponent(row, col)];
+		return energyLayers[Square.ELECTRICITY].get(row, col);
+	}
+
+	/**
+	 * Gives access to the bits of the squares with a type of energy other
+	 * than electricity, such as for finding what changed since it was last
+	 * drawn. The bit board must not be changed
+	 *
+	 * @param energyType the type of energy
+	 * @return the bits of the squares with the energy
+	 */
+	public BitBoard getEnergyLayer(int energyType)
+	{
+		return energyLayers[energyType];
+	}
+
+	/**
+	 * Lets the user know whether or not a square has a wire on it
+	 *
+	 * @param row the row of the square
+	 * @param col the column of the square
+	 * @return the wire state of the square
+	 */
+	public boolean hasWire(int row, int col)
+	{
+		return wireMask.get(row, col);
+	}
+
+	/**
+	 * Lets the user know whether or not the power is on
+	 *
+	 * @return the power state of the board
+	 */
+	public boolean isPowerOn()
+	{
+		return powerOn;
+	}
+
+	/**
+	 * Removes an item from its square, such as when it is picked up
+	 *
+	 * @param itemIndex the index of the item to be removed
+	 */
+	public void removeItem(int itemIndex)
+	{
+		settled = false;
+		int row = itemRows[itemIndex];
+		int col = itemCols[itemIndex];
+		if (squareItems.get(row, col) == itemIndex)
+		{
+			squareItems.set(row, col, Square.EMPTY);
+			squareTypes.set(row, col, Square.EMPTY);
+			itemMask.clear(row, col);
+			itemTypeMasks[itemTypes[itemIndex]].clear(row, col);
+			lightBlockers.clear(row, col);
+			waterBlockers.clear(row, col);
+			lightColBlockers.clear(col, row);
+			waterColBlockers.clear(col, row);
+			updateReceiver(row, col);
+			updateReceiver(row + 1, col);
+		}
+	}
+
+	/**
+	 * Places an item on a square, such as when it is dropped
+	 *
+	 * @param itemIndex the index of the item to be placed
+	 * @param row the row of the square
+	 * @param col the column of the square
+	 */
+	public void placeItem(int itemIndex, int row, int col)
+	{
+		settled = false;
+		itemRows[itemIndex] = row;
+		itemCols[itemIndex] = col;
+		if (squareItems.get(row, col) == Square.EMPTY)
+			squareItems.set(row, col, itemIndex);
+		int itemType = itemTypes[itemIndex];
+		squareTypes.set(row, col, itemType);
+
+		// All items block light and water except the items that convert them
+		itemMask.set(row, col);
+		itemTypeMasks[itemType].set(row, col);
+		if (Item.CONVERTED_ENERGY[itemType] != Square.LIGHT)
+		{
+			lightBlockers.set(row, col);
+			lightColBlockers.set(col, row);
+		}
+		if (Item.CONVERTED_ENERGY[itemType] != Square.WATER)
+		{
+			waterBlockers.set(row, col);
+			waterColBlockers.set(col, row);
+		}
+		updateReceiver(row, col);
+		updateReceiver(row + 1, col);
+	}
+
+	/**
+	 * Gives a square a type of energy, remembering if the board changed.
+	 * Electricity on a wire square is given to its whole component at once
+	 *
+	 * @param energyType the type of energy to be turned on
+	 * @param row the row of the square
+	 * @param col the column of the square
+	 */
+	private void energize(int energyType, int row, int col)
+	{
+		if (energyType == Square.ELECTRICITY && wireMask.get(row, col))
+		{
+			// Queue the component to pass the electricity to its squares
+			int component = network.getComponent(row, col);
+			if (!componentPowered[component])
+			{
+				componentPowered[component] = true;
+				pendingComponents[noOfPending++] = component;
+				changed = true;
+
+				// Queue the items on the component to be activated
+				if (propagating)
+					for (int member = network.getMemberStart(component); member < network
+							.getMemberEnd(component); member++)
+					{
+						int square = network.getMember(member);
+						if (itemMask.get(square / noOfCols, square
+								% noOfCols))
+							queueActivation(square / noOfCols, square
+									% noOfCols);
+					}
+			}
+		}
+		else if (energyLayers[energyType].set(row, col))
+		{
+			changed = true;
+
+			// Queue the item or converter that gained the energy
+			if (propagating)
+				if (energyType == Square.ELECTRICITY)
+				{
+					if (itemMask.get(row, col))
+						queueActivation(row, col);
+				}
+				else if (itemTypeMasks[CONVERTERS[energyType]].get(row, col))
+					queueConversion(row, col);
+		}
+	}
+
+	/**
+	 * Gives a range of squares in a row a type of energy a whole word at a
+	 * time, remembering if the board changed
+	 *
+	 * @param energyType the type of energy to be turned on
+	 * @param row the row of the squares
+	 * @param fromCol the first column of the range
+	 * @param toCol the column after the last column of the range
+	 */
+	private void energizeRange(int energyType, int row, int fromCol, int toCol)
+	{
+		for (int word = fromCol / BitBoard.WORD_SIZE; fromCol < toCol
+				&& word <= (toCol - 1) / BitBoard.WORD_SIZE; word++)
+		{
+			long added = energyLayers[energyType].setBits(row, word,
+					BitBoard.rangeMask(word, fromCol, toCol));
+			if (added != 0)
+			{
+				changed = true;
+
+				// Queue the converters that gained the energy
+				if (propagating)
+					for (long converters = added
+							& itemTypeMasks[CONVERTERS[energyType]].getWord(
+									row, word); converters != 0; converters &= converters - 1)
+						queueConversion(row, word * BitBoard.WORD_SIZE
+								+ Long.numberOfTrailingZeros(converters));
+			}
+		}
+	}
+
+	/**
+	 * Turns an item on if it is off
+	 *
+	 * @param itemIndex the index of the item to be turned on
+	 */
+	private void switchOn(int itemIndex)
+	{
+		if (itemStates[itemIndex] == Item.STATE_OFF)
+		{
+			itemStates[itemIndex] = Item.STATE_ON;
+			changed = true;
+			updateReceiver(itemRows[itemIndex], itemCols[itemIndex]);
+		}
+	}
+
+	/**
+	 * Turns on the different types of energies such as light and radio
+	 * according to the energy providing items. Also turns the items on if
+	 * there is electricity
+	 */
+	private void turnOnEnergy()
+	{
+		// Checks every square with an item on the game board
+		for (int row = 0; row < noOfRows; row++)
+			for (int col = itemMask.nextSetBit(row, 0); col != -1
+					&& col < playCols; col = itemMask.nextSetBit(row, col + 1))
+				// Checks whether or not each square has electricity
+				if (hasElectricity(row, col))
+					activate(row, col);
+
+		// Turn on the radio energy of the radios that started transmitting
+		if (radioCoverageChanged)
+			updateRadioCoverage();
+	}
+
+	/**
+	 * Turns on the item on a square with electricity and lets it give off its
+	 * energy
+	 *
+	 * @param row the row of the square
+	 * @param col the column of the square
+	 */
+	private void activate(int row, int col)
+	{
+		// Look up what the item does from the behaviour tables: every powered
+		// item except the source and blocks turns on, light bulbs, radio
+		// senders and kettles give off their energy and teleport senders
+		// teleport any item above them
+		int itemType = squareTypes.get(row, col);
+		if (Item.SWITCHES_ON[itemType])
+			switchOn(squareItems.get(row, col));
+
+		int energyType = Item.EMITTED_ENERGY[itemType];
+		if (energyType != Item.NO_ENERGY)
+			transmitEnergy(energyType, row, col);
+		else if (Item.TELEPORTS[itemType])
+			teleport(row, col);
+	}
+
+	/**
+	 * Transform the energies occupying squares back to electricity if the
+	 * right item and its corresponding energy are present
+	 */
+	private void energyToElectricity()
+	{
+		// Combine the converter and energy bits a whole word at a time
+		for (int row = 0; row < noOfRows; row++)
+			for (int word = 0; word < wireMask.getWordsPerRow(); word++)
+			{
+				// Solar Panel: converts light into electricity
+				// Dish: converts radio into electricity
+				// Turbines: converts water into electricity
+				long converting = 0;
+				for (int energyType = Square.LIGHT; energyType < Square.NO_OF_STATES; energyType++)
+					converting |= itemTypeMasks[CONVERTERS[energyType]]
+							.getWord(row, word)
+							& energyLayers[energyType].getWord(row, word);
+
+				// Give electricity to each converting square
+				for (; converting != 0; converting &= converting - 1)
+				{
+					int col = word * BitBoard.WORD_SIZE
+							+ Long.numberOfTrailingZeros(converting);
+					if (col < playCols)
+						energize(Square.ELECTRICITY, row, col);
+				}
+			}
+	}
+
+	/**
+	 * Finds the leftmost square light from a light bulb reaches in its row
+	 *
+	 * @param row the row of the light bulb
+	 * @param col the column of the light bulb
+	 * @return the column of the leftmost lit square
+	 */
+	private int leftLightEdge(int row, int col)
+	{
+		return lightBlockers.previousSetBit(row, col - 1) + 1;
+	}
+
+	/**
+	 * Finds the column after the rightmost square light from a light bulb
+	 * reaches in its row
+	 *
+	 * @param row the row of the light bulb
+	 * @param col the column of the light bulb
+	 * @return the column after the rightmost lit square
+	 */
+	private int rightLightEdge(int row, int col)
+	{
+		int blocker = lightBlockers.nextSetBit(row, col + 1);
+		if (blocker == -1 || blocker > playCols)
+			return playCols;
+		return blocker;
+	}
+
+	/**
+	 * Finds the topmost square light from a light bulb reaches in its column
+	 *
+	 * @param row the row of the light bulb
+	 * @param col the column of the light bulb
+	 * @return the row of the topmost lit square
+	 */
+	private int topLightEdge(int row, int col)
+	{
+		return lightColBlockers.previousSetBit(col, row - 1) + 1;
+	}
+
+	/**
+	 * Finds the row after the bottommost square light from a light bulb
+	 * reaches in its column
+	 *
+	 * @param row the row of the light bulb
+	 * @param col the column of the light bulb
+	 * @return the row after the bottommost lit square
+	 */
+	private int bottomLightEdge(int row, int col)
+	{
+		int blocker = lightColBlockers.nextSetBit(col, row + 1);
+		if (blocker == -1)
+			return noOfRows;
+		return blocker;
+	}
+
+	/**
+	 * Finds the row after the lowest square water from a kettle reaches in
+	 * its column
+	 *
+	 * @param row the row of the kettle
+	 * @param col the column of the kettle
+	 * @return the row after the lowest square with water
+	 */
+	private int waterEdge(int row, int col)
+	{
+		int blocker = waterColBlockers.nextSetBit(col, row + 1);
+		if (blocker == -1)
+			return noOfRows;
+		return blocker;
+	}
+
+	/**
+	 * Gives a range of squares in a column a type of energy
+	 *
+	 * @param energyType the type of energy to be turned on
+	 * @param col the column of the squares
+	 * @param fromRow the first row of the range
+	 * @param toRow the row after the last row of the range
+	 */
+	private void energizeColumn(int energyType, int col, int fromRow, int toRow)
+	{
+		for (int row = fromRow; row < toRow; row++)
+			energize(energyType, row, col);
+	}
+
+	/**
+	 * Transmits a certain energy across squares according to the given energy
+	 * to be transmitted. Each energy type has a different transmission
+	 * behaviour (i.e. water transmits downwards only)
+	 *
+	 * @param energyType the type of energy to be transmitted
+	 * @param row the row at which the transmission starts
+	 * @param col the column at which the transmission starts
+	 */
+	private void transmitEnergy(int energyType, int row, int col)
+	{
+		// LIGHT
+		if (energyType == Square.LIGHT)
+		{
+			// All items block light except for solar panels. Transmit light
+			// up, down, left and right from the light bulb up to the closest
+			// blockers in one fill each
+			energizeColumn(Square.LIGHT, col, topLightEdge(row, col), row);
+			energizeColumn(Square.LIGHT, col, row + 1,
+					bottomLightEdge(row, col));
+			energizeRange(Square.LIGHT, row, leftLightEdge(row, col), col);
+			energizeRange(Square.LIGHT, row, col + 1,
+					rightLightEdge(row, col));
+		}
+		// RADIO WAVES
+		else if (energyType == Square.RADIO)
+		{
+			// Add the 5x5 range centered at the radio transmitter to the
+			// coverage. The squares are turned on together with those of
+			// every other radio that started transmitting
+			if (radioSources.set(row, col))
+				addRadioRange(row, col, 1);
+		}
+		// WATER
+		else if (energyType == Square.WATER)
+		{
+			// All items except the turbine blocks water. Let the water flow
+			// down to the closest blocker
+			energizeColumn(Square.WATER, col, row + 1, waterEdge(row, col));
+		}
+	}
+
+	/**
+	 * Adds or takes away a radio's 5x5 range, clipped to the play area, in the
+	 * difference array of the radio coverage
+	 *
+	 * @param row the row of the radio
+	 * @param col the column of the radio
+	 * @param change 1 to add the range or -1 to take it away
+	 */
+	private void addRadioRange(int row, int col, int change)
+	{
+		int fromRow = Math.max(row - 2, 0);
+		int toRow = Math.min(row + 3, noOfRows);
+		int fromCol = Math.max(col - 2, 0);
+		int toCol = Math.min(col + 3, playCols);
+		radioDifferences.add(fromRow, fromCol, change);
+		radioDifferences.add(fromRow, toCol, -change);
+		radioDifferences.add(toRow, fromCol, -change);
+		radioDifferences.add(toRow, toCol, change);
+
+		// Grow the box of squares whose counts changed
+		if (!radioCoverageChanged)
+		{
+			radioCoverageChanged = true;
+			changedFromRow = fromRow;
+			changedToRow = toRow;
+			changedFromCol = fromCol;
+			changedToCol = toCol;
+		}
+		else
+		{
+			changedFromRow = Math.min(changedFromRow, fromRow);
+			changedToRow = Math.max(changedToRow, toRow);
+			changedFromCol = Math.min(changedFromCol, fromCol);
+			changedToCol = Math.max(changedToCol, toCol);
+		}
+	}
+
+	/**
+	 * Works out how many radios cover each square from the difference array
+	 * and turns the radio energy on or off wherever it changed a whole word at
+	 * a time. Dishes that gain radio energy are queued to convert it and
+	 * dishes that lose it lose their electricity
+	 */
+	private void updateRadioCoverage()
+	{
+		radioCoverageChanged = false;
+
+		// Only the counts inside the changed box can be different, so add up
+		// the differences there row by row onto the counts above. The sum of
+		// the differences left of the box in a row is the count to its left
+		// less the count above that. Chunks are as wide as words, so each
+		// word of the row is added up inside one chunk of each board
+		BitBoard radioLayer = energyLayers[Square.RADIO];
+		BitBoard dishes = itemTypeMasks[CONVERTERS[Square.RADIO]];
+		for (int row = changedFromRow; row < changedToRow; row++)
+		{
+			int rowSum = 0;
+			if (changedFromCol > 0)
+			{
+				rowSum = radioCounts.get(row, changedFromCol - 1);
+				if (row > 0)
+					rowSum -= radioCounts.get(row - 1, changedFromCol - 1);
+			}
+
+			for (int word = changedFromCol / BitBoard.WORD_SIZE; word <= (changedToCol - 1)
+					/ BitBoard.WORD_SIZE; word++)
+			{
+				long range = BitBoard.rangeMask(word, changedFromCol,
+						changedToCol);
+				int fromCol = word * BitBoard.WORD_SIZE
+						+ Long.numberOfTrailingZeros(range);
+				int toCol = word * BitBoard.WORD_SIZE + BitBoard.WORD_SIZE
+						- Long.numberOfLeadingZeros(range);
+				int[] differences = radioDifferences.getChunk(row, fromCol);
+				int[] above = row > 0 ? radioCounts.getChunk(row - 1, fromCol)
+						: null;
+				int[] counts = radioCounts.getChunk(row, fromCol);
+
+				// Count the radios covering each square of the changed part
+				// of the word and collect the covered squares
+				long covered = 0;
+				for (int col = fromCol; col < toCol; col++)
+				{
+					int index = ChunkedBoard.indexOf(row, col);
+					rowSum += differences[index];
+					int count = rowSum;
+					if (above != null)
+						count += above[ChunkedBoard.indexOf(row - 1, col)];
+					if (counts[index] != count)
+					{
+						counts = radioCounts.getChunkToSet(row, col);
+						counts[index] = count;
+					}
+					if (count > 0)
+						covered |= 1L << col;
+				}
+
+				long added = radioLayer.setBits(row, word, covered);
+				long removed = radioLayer.clearBits(row, word, range
+						& ~covered);
+				if (added != 0)
+					changed = true;
+
+				// Queue the dishes that gained radio energy
+				if (propagating)
+					for (long converters = added & dishes.getWord(row, word); converters != 0; converters &= converters - 1)
+						queueConversion(row, word * BitBoard.WORD_SIZE
+								+ Long.numberOfTrailingZeros(converters));
+
+				// Dishes that lost radio energy lose their electricity
+				for (long converters = removed & dishes.getWord(row, word); converters != 0; converters &= converters - 1)
+					loseElectricity(row, word * BitBoard.WORD_SIZE
+							+ Long.numberOfTrailingZeros(converters));
+			}
+		}
+	}
+
+	/**
+	 * Spreads electricity to all the squares connected by wires. The
+	 * components already have their electricity, so this only marks the
+	 * squares of the components that gained it since the last conduction
+	 */
+	public void conductWires()
+	{
+		while (noOfPending > 0)
+		{
+			int component = pendingComponents[--noOfPending];
+			for (int member = network.getMemberStart(component); member < network
+					.getMemberEnd(component); member++)
+			{
+				int square = network.getMember(member);
+				energyLayers[Square.ELECTRICITY].set(square / noOfCols,
+						square % noOfCols);
+			}
+		}
+	}
+
+	/**
+	 * Activates the items that have electricity and converts the energies
+	 * they give off back to electricity
+	 */
+	public void convertEnergy()
+	{
+		turnOnEnergy();
+		energyToElectricity();
+	}
+
+	/**
+	 * Teleports the item above the Teleport Sender to the Teleport Receiver if
+	 * possible
+	 *
+	 * @param row the row location of the Teleport Sender
+	 * @param col the column location of the Teleport Sender
+	 */
+	private void teleport(int row, int col)
+	{
+		// Only teleport if there is an object to be teleported
+		if (row - 1 < 0 || !itemMask.get(row - 1, col))
+			return;
+		int itemStoreIndex = squareItems.get(row - 1, col);
+
+		// Take the powered Teleport Receiver with an empty square above it
+		// from the registry. The topmost row wins and the rightmost receiver
+		// in it is kept
+		int rowReceive = openReceiverRows.nextSetBit(0, 0);
+		if (rowReceive == -1)
+			return;
+		int colReceive = openReceivers.previousSetBit(rowReceive, playCols - 1);
+
+		// Remove the item from the previous position and add it to the new
+		// position
+		removeItem(itemStoreIndex);
+		placeItem(itemStoreIndex, rowReceive - 1, colReceive);
+		changed = true;
+	}
+
+	/**
+	 * Adds a square to the registry of open Teleport Receivers if it has a
+	 * powered receiver with an empty square above it, or takes it out if not
+	 *
+	 * @param row the row of the square
+	 * @param col the column of the square
+	 */
+	private void updateReceiver(int row, int col)
+	{
+		if (row < 1 || row >= noOfRows || col >= playCols)
+			return;
+
+		if (squareTypes.get(row, col) == Item.TRECEIVER
+				&& itemStates[squareItems.get(row, col)] == Item.STATE_ON
+				&& squareItems.get(row - 1, col) == Square.EMPTY)
+		{
+			openReceivers.set(row, col);
+			openReceiverRows.set(0, row);
+		}
+		else
+		{
+			openReceivers.clear(row, col);
+			if (openReceivers.nextSetBit(row, 0) == -1)
+				openReceiverRows.clear(0, row);
+		}
+	}
+
+	/**
+	 * Moves an item to a square. If the board has settled with the power on,
+	 * only the energies the item could have affected are cleared and then
+	 * rebuilt, instead of restarting the whole board from the source. Boards
+	 * with Teleport Senders, or a moved source or Teleport Sender, are
+	 * restarted since where items end up depends on the order things happened
+	 * in. Moving an item from the inventory adds it to the board and moving it
+	 * to the inventory removes it. MoveChecker compares the caught up board
+	 * with a full rebuild
+	 *
+	 * @param itemIndex the index of the item to be moved
+	 * @param row the row of the new square
+	 * @param col the column of the new square
+	 */
+	public void moveItem(int itemIndex, int row, int col)
+	{
+		// Nothing to catch up without power
+		if (!powerOn)
+		{
+			removeItem(itemIndex);
+			placeItem(itemIndex, row, col);
+			return;
+		}
+
+		// Restart the board when it cannot be caught up
+		if (!settled || itemTypes[itemIndex] == Item.SOURCE
+				|| itemTypes[itemIndex] == Item.TSENDER || hasTeleporters())
+		{
+			turnOffPower();
+			removeItem(itemIndex);
+			placeItem(itemIndex, row, col);
+			runToFixpoint();
+			return;
+		}
+
+		int oldRow = itemRows[itemIndex];
+		int oldCol = itemCols[itemIndex];
+
+		// Clear everything that depended on the item at its old square and
+		// the beams that the item will block at its new square
+		if (oldCol < playCols)
+		{
+			int energyType = Item.CONVERTED_ENERGY[itemTypes[itemIndex]];
+			if (energyType != Item.NO_ENERGY
+					&& energyLayers[energyType].get(oldRow, oldCol))
+				loseElectricity(oldRow, oldCol);
+			deactivate(itemIndex);
+		}
+		if (col < playCols)
+			clearBeamsThrough(row, col);
+		clearLostSquares();
+
+		// Move the item
+		removeItem(itemIndex);
+		placeItem(itemIndex, row, col);
+
+		// Beams through both squares may now reach further or less far
+		clearedLightRows[oldRow] = clearedLightRows[row] = true;
+		clearedLightCols[oldCol] = clearedLightCols[col] = true;
+		clearedWaterCols[oldCol] = clearedWaterCols[col] = true;
+
+		// Rebuild what is still supported and spread from it
+		propagating = true;
+		retransmit();
+		reconvert();
+		for (int item = 0; item < noOfItems; item++)
+			if (itemTypes[item] == Item.SOURCE)
+				energize(Square.ELECTRICITY, itemRows[item], itemCols[item]);
+		if (col < playCols)
+		{
+			if (hasElectricity(row, col))
+				queueActivation(row, col);
+			queueConverter(row, col);
+		}
+		propagate();
+		propagating = false;
+
+		// Forget what was cleared for the next move
+		noOfLost = 0;
+		Arrays.fill(clearedLightRows, false);
+		Arrays.fill(clearedLightCols, false);
+		Arrays.fill(clearedWaterCols, false);
+
+		conductWires();
+		settled = true;
+	}
+
+	/**
+	 * Determines if there is a Teleport Sender on the game board
+	 *
+	 * @return whether or not the game board has a Teleport Sender
+	 */
+	private boolean hasTeleporters()
+	{
+		for (int row = 0; row < noOfRows; row++)
+		{
+			int col = itemTypeMasks[Item.TSENDER].nextSetBit(row, 0);
+			if (col != -1 && col < playCols)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Takes electricity away from a square, or from its whole component if it
+	 * has a wire, and remembers the square so its items can be turned off
+	 *
+	 * @param row the row of the square
+	 * @param col the column of the square
+	 */
+	private void loseElectricity(int row, int col)
+	{
+		if (wireMask.get(row, col))
+		{
+			int component = network.getComponent(row, col);
+			if (!componentPowered[component])
+				return;
+			componentPowered[component] = false;
+		}
+		else if (energyLayers[Square.ELECTRICITY].clearBits(row, col
+				/ BitBoard.WORD_SIZE, 1L << col) == 0)
+			return;
+		lostSquares = grow(lostSquares, noOfLost);
+		lostSquares[noOfLost++] = row * noOfCols + col;
+	}
+
+	/**
+	 * Turns off the items on the squares that lost electricity, which can
+	 * clear more energy and lose more squares their electricity
+	 */
+	private void clearLostSquares()
+	{
+		int lost = 0;
+		do
+		{
+			for (; lost < noOfLost; lost++)
+			{
+				int row = lostSquares[lost] / noOfCols;
+				int col = lostSquares[lost] % noOfCols;
+
+				if (wireMask.get(row, col))
+				{
+					int component = network.getComponent(row, col);
+					for (int member = network.getMemberStart(component); member < network
+							.getMemberEnd(component); member++)
+					{
+						int square = network.getMember(member);
+						energyLayers[Square.ELECTRICITY].clear(square
+								/ noOfCols, square % noOfCols);
+						deactivateSquare(square / noOfCols, square
+								% noOfCols);
+					}
+				}
+				else
+					deactivateSquare(row, col);
+			}
+
+			// Radios that were turned off uncover the squares no other radio
+			// covers, which can lose more squares their electricity
+			if (radioCoverageChanged)
+				updateRadioCoverage();
+		}
+		while (lost < noOfLost);
+	}
+
+	/**
+	 * Turns off the item on a square, if there is one
+	 *
+	 * @param row the row of the square
+	 * @param col the column of the square
+	 */
+	private void deactivateSquare(int row, int col)
+	{
+		if (itemMask.get(row, col))
+			deactivate(squareItems.get(row, col));
+	}
+
+	/**
+	 * Turns off an item and clears the energy it was giving off. The source
+	 * always stays on
+	 *
+	 * @param itemIndex the index of the item
+	 */
+	private void deactivate(int itemIndex)
+	{
+		if (itemTypes[itemIndex] == Item.SOURCE
+				|| itemStates[itemIndex] == Item.STATE_OFF)
+			return;
+		itemStates[itemIndex] = Item.STATE_OFF;
+		updateReceiver(itemRows[itemIndex], itemCols[itemIndex]);
+
+		int energyType = Item.EMITTED_ENERGY[itemTypes[itemIndex]];
+		if (energyType != Item.NO_ENERGY)
+			clearEnergy(energyType, itemRows[itemIndex], itemCols[itemIndex]);
+	}
+
+	/**
+	 * Clears the beams of the light bulbs and kettles that are on and pass
+	 * through a square
+	 *
+	 * @param row the row of the square
+	 * @param col the column of the square
+	 */
+	private void clearBeamsThrough(int row, int col)
+	{
+		// Light bulbs in the same row and column
+		for (int bulbCol = itemTypeMasks[Item.LIGHT_BULB].nextSetBit(row, 0); bulbCol != -1
+				&& bulbCol < playCols; bulbCol = itemTypeMasks[Item.LIGHT_BULB]
+				.nextSetBit(row, bulbCol + 1))
+			clearEnergyOf(Square.LIGHT, row, bulbCol);
+		for (int bulbRow = 0; bulbRow < noOfRows; bulbRow++)
+			if (itemTypeMasks[Item.LIGHT_BULB].get(bulbRow, col))
+				clearEnergyOf(Square.LIGHT, bulbRow, col);
+
+		// Kettles above in the same column
+		for (int kettleRow = 0; kettleRow < row; kettleRow++)
+			if (itemTypeMasks[Item.KETTLE].get(kettleRow, col))
+				clearEnergyOf(Square.WATER, kettleRow, col);
+	}
+
+	/**
+	 * Clears the energy given off by the item on a square if it is on
+	 *
+	 * @param energyType the type of energy the item gives off
+	 * @param row the row of the item
+	 * @param col the column of the item
+	 */
+	private void clearEnergyOf(int energyType, int row, int col)
+	{
+		if (itemStates[squareItems.get(row, col)] == Item.STATE_ON)
+			clearEnergy(energyType, row, col);
+	}
+
+	/**
+	 * Clears the squares a beam of energy from a square reaches, the reverse
+	 * of transmitEnergy, and remembers where energy was cleared
+	 *
+	 * @param energyType the type of energy to be cleared
+	 * @param row the row at which the transmission starts
+	 * @param col the column at which the transmission starts
+	 */
+	private void clearEnergy(int energyType, int row, int col)
+	{
+		// LIGHT
+		if (energyType == Square.LIGHT)
+		{
+			clearedLightRows[row] = true;
+			clearedLightCols[col] = true;
+			clearColumn(Square.LIGHT, col, topLightEdge(row, col), row);
+			clearColumn(Square.LIGHT, col, row + 1, bottomLightEdge(row, col));
+			clearRange(Square.LIGHT, row, leftLightEdge(row, col), col);
+			clearRange(Square.LIGHT, row, col + 1, rightLightEdge(row, col));
+		}
+		// RADIO WAVES
+		else if (energyType == Square.RADIO)
+		{
+			// Squares other radios still cover keep their radio energy
+			if (radioSources.get(row, col))
+			{
+				radioSources.clear(row, col);
+				addRadioRange(row, col, -1);
+			}
+		}
+		// WATER
+		else if (energyType == Square.WATER)
+		{
+			clearedWaterCols[col] = true;
+			clearColumn(Square.WATER, col, row + 1, waterEdge(row, col));
+		}
+	}
+
+	/**
+	 * Clears a type of energy from a range of squares in a row. Converters
+	 * that lose their energy lose their electricity too
+	 *
+	 * @param energyType the type of energy to be cleared
+	 * @param row the row of the squares
+	 * @param fromCol the first column of the range
+	 * @param toCol the column after the last column of the range
+	 */
+	private void clearRange(int energyType, int row, int fromCol, int toCol)
+	{
+		for (int word = fromCol / BitBoard.WORD_SIZE; fromCol < toCol
+				&& word <= (toCol - 1) / BitBoard.WORD_SIZE; word++)
+			for (long converters = energyLayers[energyType].clearBits(row,
+					word, BitBoard.rangeMask(word, fromCol, toCol))
+					& itemTypeMasks[CONVERTERS[energyType]].getWord(row, word); converters != 0; converters &= converters - 1)
+				loseElectricity(row, word * BitBoard.WORD_SIZE
+						+ Long.numberOfTrailingZeros(converters));
+	}
+
+	/**
+	 * Clears a type of energy from a range of squares in a column
+	 *
+	 * @param energyType the type of energy to be cleared
+	 * @param col the column of the squares
+	 * @param fromRow the first row of the range
+	 * @param toRow the row after the last row of the range
+	 */
+	private void clearColumn(int energyType, int col, int fromRow, int toRow)
+	{
+		for (int row = fromRow; row < toRow; row++)
+			clearRange(energyType, row, col, col + 1);
+	}
+
+	/**
+	 * Lets the light bulbs and kettles that are still on give off their energy
+	 * again wherever energy was cleared, since their beams may have covered
+	 * the same squares. A light bulb's beams can cross a cleared row or column
+	 * as well as run along it. Radios that are still on never lost their
+	 * coverage
+	 */
+	private void retransmit()
+	{
+		for (int row = 0; row < noOfRows; row++)
+			for (int col = itemMask.nextSetBit(row, 0); col != -1
+					&& col < playCols; col = itemMask.nextSetBit(row, col + 1))
+			{
+				int itemIndex = squareItems.get(row, col);
+				if (itemStates[itemIndex] == Item.STATE_OFF)
+					continue;
+
+				int energyType = Item.EMITTED_ENERGY[squareTypes.get(row, col)];
+				if (energyType == Square.LIGHT && crossesClearedLight(row, col))
+					transmitEnergy(Square.LIGHT, row, col);
+				else if (energyType == Square.WATER && clearedWaterCols[col])
+					transmitEnergy(Square.WATER, row, col);
+			}
+	}
+
+	/**
+	 * Determines if the beams of a light bulb run along or cross a row or
+	 * column where light was cleared
+	 *
+	 * @param row the row of the light bulb
+	 * @param col the column of the light bulb
+	 * @return whether or not the beams may have covered cleared squares
+	 */
+	private boolean crossesClearedLight(int row, int col)
+	{
+		if (clearedLightRows[row] || clearedLightCols[col])
+			return true;
+		for (int beamCol = leftLightEdge(row, col), toCol = rightLightEdge(
+				row, col); beamCol < toCol; beamCol++)
+			if (clearedLightCols[beamCol])
+				return true;
+		for (int beamRow = topLightEdge(row, col), toRow = bottomLightEdge(
+				row, col); beamRow < toRow; beamRow++)
+			if (clearedLightRows[beamRow])
+				return true;
+		return false;
+	}
+
+	/**
+	 * Queues the converters on the squares that lost electricity if they
+	 * still have their energy
+	 */
+	private void reconvert()
+	{
+		for (int lost = 0; lost < noOfLost; lost++)
+		{
+			int row = lostSquares[lost] / noOfCols;
+			int col = lostSquares[lost] % noOfCols;
+
+			if (wireMask.get(row, col))
+			{
+				int component = network.getComponent(row, col);
+				for (int member = network.getMemberStart(component); member < network
+						.getMemberEnd(component); member++)
+					queueConverter(network.getMember(member) / noOfCols,
+							network.getMember(member) % noOfCols);
+			}
+			else
+				queueConverter(row, col);
+		}
+	}
+
+	/**
+	 * Queues the converter on a square if it has the energy it converts
+	 *
+	 * @param row the row of the square
+	 * @param col the column of the square
+	 */
+	private void queueConverter(int row, int col)
+	{
+		int itemType = squareTypes.get(row, col);
+		if (itemType == Square.EMPTY)
+			return;
+
+		int energyType = Item.CONVERTED_ENERGY[itemType];
+		if (energyType != Item.NO_ENERGY
+				&& energyLayers[energyType].get(row, col))
+			queueConversion(row, col);
+	}
+
+	/**
+	 * Queues the item on a square to be activated unless it already is
+	 *
+	 * @param row the row of the square
+	 * @param col the column of the square
+	 */
+	private void queueActivation(int row, int col)
+	{
+		if (activatingMask.set(row, col))
+		{
+			activatingSquares = grow(activatingSquares, noOfActivating);
+			activatingSquares[noOfActivating++] = row * noOfCols + col;
+		}
+	}
+
+	/**
+	 * Queues the converter on a square to give its square electricity unless
+	 * it already is
+	 *
+	 * @param row the row of the square
+	 * @param col the column of the square
+	 */
+	private void queueConversion(int row, int col)
+	{
+		if (convertingMask.set(row, col))
+		{
+			convertingSquares = grow(convertingSquares, noOfConverting);
+			convertingSquares[noOfConverting++] = row * noOfCols + col;
+		}
+	}
+
+	/**
+	 * Makes room for one more square in a queue, doubling its size if it is
+	 * full
+	 *
+	 * @param queue the queue
+	 * @param size the number of squares in the queue
+	 * @return the queue, or a bigger copy of it
+	 */
+	private static int[] grow(int[] queue, int size)
+	{
+		if (size < queue.length)
+			return queue;
+		return Arrays.copyOf(queue, queue.length * 2);
+	}
+
+	/**
+	 * Spreads the queued energy until nothing new gains energy, converting
+	 * energy to electricity and activating items as soon as they can
+	 */
+	private void propagate()
+	{
+		while (noOfConverting > 0 || noOfActivating > 0
+				|| radioCoverageChanged)
+			if (noOfConverting > 0)
+			{
+				int square = convertingSquares[--noOfConverting];
+				convertingMask.clear(square / noOfCols, square % noOfCols);
+				energize(Square.ELECTRICITY, square / noOfCols, square
+						% noOfCols);
+			}
+			else if (noOfActivating > 0)
+			{
+				int square = activatingSquares[--noOfActivating];
+				activatingMask.clear(square / noOfCols, square % noOfCols);
+				if (square % noOfCols < playCols)
+					activate(square / noOfCols, square % noOfCols);
+			}
+			// Once nothing else is queued, turn on the radio energy of the
+			// radios that started transmitting
+			else
+				updateRadioCoverage();
+	}
+
+	/**
+	 * Turns on the power starting at the source
+	 */
+	public void turnOnPower()
+	{
+		powerOn = true;
+		settled = false;
+
+		// Give electricity to the source
+		for (int item = 0; item < noOfItems; item++)
+			if (itemTypes[item] == Item.SOURCE)
+			{
+				itemStates[item] = Item.STATE_ON;
+				energize(Square.ELECTRICITY, itemRows[item], itemCols[item]);
+			}
+	}
+
+	/**
+	 * Shuts down all power on the board
+	 */
+	public void turnOffPower()
+	{
+		powerOn = false;
+		settled = false;
+		Arrays.fill(componentPowered, false);
+		noOfPending = 0;
+
+		// No energy
+		for (BitBoard energyLayer : energyLayers)
+			energyLayer.clear();
+		radioSources.clear();
+		radioDifferences.clear();
+		radioCounts.clear();
+		radioCoverageChanged = false;
+
+		// All items in off states
+		for (int item = 0; item < noOfItems; item++)
+			itemStates[item] = Item.STATE_OFF;
+		openReceivers.clear();
+		openReceiverRows.clear();
+	}
+
+	/**
+	 * Advances the simulation by one long tick, conducting the wires once for
+	 * every short tick and then converting the energies
+	 *
+	 * @return whether or not anything on the board changed
+	 */
+	public boolean step()
+	{
+		changed = false;
+		for (int conduction = 0; conduction < CONDUCTIONS_PER_STEP; conduction++)
+			conductWires();
+		convertEnergy();
+		return changed;
+	}
+
+	/**
+	 * Turns the power on if needed and steps until the board stops changing
+	 * or, on boards with Teleport Senders, until it comes back to a state it
+	 * was in before. Energy is never taken away while the power is on, so
+	 * only teleported items can keep a board changing forever. States are
+	 * looked up by their hash, and a match only counts as a cycle if the board
+	 * is in exactly the same state again after as many more steps
+	 *
+	 * @return the number of steps taken, or -1 if the board still changed
+	 *         after the maximum number of steps
+	 */
+	public int runToFixpoint()
+	{
+		if (!powerOn)
+			turnOnPower();
+		period = 0;
+
+		// Remember the step each state was seen at to find a cycle
+		HashMap<Long, Integer> seenStates = null;
+		if (hasTeleporters())
+			seenStates = new HashMap<Long, Integer>();
+
+		for (int steps = 1; steps <= MAX_STEPS; steps++)
+		{
+			if (!step())
+			{
+				settled = true;
+				return steps;
+			}
+
+			if (seenStates != null)
+			{
+				Integer seenStep = seenStates.put(stateHash(), steps);
+				if (seenStep != null)
+				{
+					// Step through the cycle again and compare the states,
+					// since different states can have the same hash
+					int cycle = steps - seenStep;
+					long[] state = saveState();
+					for (int step = 0; step < cycle; step++)
+					{
+						if (steps == MAX_STEPS)
+							return -1;
+						steps++;
+						if (!step())
+							return steps;
+					}
+					if (Arrays.equals(state, saveState()))
+					{
+						// The board is back in the state the cycle was found in
+						period = cycle;
+						return steps - cycle;
+					}
+					seenStates.put(stateHash(), steps);
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Gives access to the length of the cycle the last run to a fixpoint
+	 * found the board repeating
+	 *
+	 * @return the number of steps in the cycle, or 0 if the board did not
+	 *         repeat
+	 */
+	public int getPeriod()
+	{
+		return period;
+	}
+
+	/**
+	 * Works out a hash of everything a step can change: the items' squares
+	 * and states, the wire components with electricity and the energies
+	 *
+	 * @return the hash of the board's state
+	 */
+	private long stateHash()
+	{
+		long hash = 1;
+		for (int item = 0; item < noOfItems; item++)
+			hash = hash * 31 + (itemRows[item] * noOfCols + itemCols[item])
+					* 2 + (itemStates[item] == Item.STATE_ON ? 1 : 0);
+		for (int component = 0; component < componentPowered.length; component++)
+			hash = hash * 31 + (componentPowered[component] ? 1 : 0);
+		for (BitBoard energyLayer : energyLayers)
+			for (int row = 0; row < noOfRows; row++)
+				for (int word = 0; word < energyLayer.getWordsPerRow(); word++)
+					hash = hash * 0x9E3779B97F4A7C15L
+							+ energyLayer.getWord(row, word);
+		return hash;
+	}
+
+	/**
+	 * Copies everything a step can change: the items' squares and states, the
+	 * wire components with electricity and the energies
+	 *
+	 * @return the board's state
+	 */
+	private long[] saveState()
+	{
+		int wordsPerRow = energyLayers[0].getWordsPerRow();
+		long[] state = new long[noOfItems + componentPowered.length
+				+ energyLayers.length * noOfRows * wordsPerRow];
+		int pos = 0;
+		for (int item = 0; item < noOfItems; item++)
+			state[pos++] = (itemRows[item] * noOfCols + itemCols[item]) * 2
+					+ (itemStates[item] == Item.STATE_ON ? 1 : 0);
+		for (int component = 0; component < componentPowered.length; component++)
+			state[pos++] = componentPowered[component] ? 1 : 0;
+		for (BitBoard energyLayer : energyLayers)
+			for (int row = 0; row < noOfRows; row++)
+				for (int word = 0; word < wordsPerRow; word++)
+					state[pos++] = energyLayer.getWord(row, word);
+		return state;
+	}
+
+	/**
+	 * Determines whether or not another simulation of the same board is in
+	 * exactly the same state, such as a board caught up after a move and the
+	 * same board simulated again from the start
+	 *
+	 * @param other the other simulation, loaded from the same board
+	 * @return whether or not the items, the wires with electricity and the
+	 *         energies are all the same
+	 */
+	public boolean isSameState(Simulation other)
+	{
+		return Arrays.equals(saveState(), other.saveState());
+	}
+
+	/**
+	 * Checks to see if the target has power
+	 *
+	 * @return whether or not the level is complete
+	 */
+	public boolean isWon()
+	{
+		for (int item = 0; item < noOfItems; item++)
+			if (itemTypes[item] == Item.TARGET
+					&& hasElectricity(itemRows[item], itemCols[item]))
+				return true;
+		return false;
+	}
+}
@@ -0,0 +1,178 @@
+import java.awt.event.*;
+
+import javax.swing.Timer;
+
+/**
+ * SimulationClock - the one clock that drives a simulation. Every tick
+ * conducts the wires and every CONDUCTIONS_PER_STEP ticks the energies are
+ * converted, so the phases always happen in the same order no matter how
+ * fast the clock runs. The clock can run at real time, sped up, or as fast
+ * as the events can be handled
+ */
+public class SimulationClock implements ActionListener
+{
+	/* Constants */
+	// Clock Modes
+	public static final int REALTIME = 0;
+	public static final int ACCELERATED = 1;
+	public static final int UNTHROTTLED = 2;
+
+	// Time between ticks at real time, in milliseconds
+	public static final int TICK_INTERVAL = 250;
+
+	/* Variables */
+	private Simulation simulation;
+	private ActionListener stepListener;
+	private Timer timer;
+
+	private int mode;
+	private int speedUp;
+
+	// Ticks since the clock started and the number of conductions done in
+	// the current step
+	private long ticks;
+	private int conductions;
+
+	/**
+	 * Constructs a new SimulationClock running at real time
+	 *
+	 * @param simulation the simulation to be driven
+	 * @param stepListener told after each step's energies are converted
+	 */
+	public SimulationClock(Simulation simulation, ActionListener stepListener)
+	{
+		this.simulation = simulation;
+		this.stepListener = stepListener;
+		mode = REALTIME;
+		speedUp = 1;
+		timer = new Timer(TICK_INTERVAL, this);
+	}
+
+	/**
+	 * Sets how the clock runs. When accelerated, ticks come speedUp times as
+	 * often as at real time. When unthrottled, every event runs a whole step
+	 * with no wait in between
+	 *
+	 * @param mode REALTIME, ACCELERATED or UNTHROTTLED
+	 * @param speedUp how many times faster than real time an accelerated
+	 *            clock runs
+	 */
+	public void setMode(int mode, int speedUp)
+	{
+		if (mode < REALTIME || mode > UNTHROTTLED || speedUp < 1)
+			throw new IllegalArgumentException("Invalid clock mode");
+		this.mode = mode;
+		this.speedUp = speedUp;
+		updateDelay();
+	}
+
+	/**
+	 * Gives access to the mode of the clock
+	 *
+	 * @return REALTIME, ACCELERATED or UNTHROTTLED
+	 */
+	public int getMode()
+	{
+		return mode;
+	}
+
+	/**
+	 * Sets the delay of the timer to match the mode
+	 */
+	private void updateDelay()
+	{
+		int delay = TICK_INTERVAL;
+		if (mode == ACCELERATED)
+			delay = Math.max(TICK_INTERVAL / speedUp, 1);
+		else if (mode == UNTHROTTLED)
+			delay = 0;
+		timer.setDelay(delay);
+		timer.setInitialDelay(delay);
+	}
+
+	/**
+	 * Starts the clock from the beginning of a step
+	 */
+	public void start()
+	{
+		ticks = 0;
+		conductions = 0;
+		timer.restart();
+	}
+
+	/**
+	 * Stops the clock
+	 */
+	public void stop()
+	{
+		timer.stop();
+	}
+
+	/**
+	 * Determines whether or not the clock is running
+	 *
+	 * @return whether or not the clock is running
+	 */
+	public boolean isRunning()
+	{
+		return timer.isRunning();
+	}
+
+	/**
+	 * Gives access to the number of ticks since the clock started
+	 *
+	 * @return the number of ticks
+	 */
+	public long getTicks()
+	{
+		return ticks;
+	}
+
+	/**
+	 * Runs a number of whole steps right away without the timer, such as for
+	 * soak tests that do not need to watch the board
+	 *
+	 * @param steps the number of steps to run
+	 * @return whether or not anything changed in the last step
+	 */
+	public boolean advance(int steps)
+	{
+		boolean changed = false;
+		for (int step = 0; step < steps; step++)
+		{
+			changed = simulation.step();
+			ticks += Simulation.CONDUCTIONS_PER_STEP;
+		}
+		conductions = 0;
+		return changed;
+	}
+
+	/**
+	 * Runs one tick, or one whole step when unthrottled, and tells the step
+	 * listener once the energies are converted
+	 *
+	 * @param event the Timer event
+	 */
+	public void actionPerformed(ActionEvent event)
+	{
+		if (mode == UNTHROTTLED)
+		{
+			advance(1);
+			stepListener.actionPerformed(new ActionEvent(this,
+					ActionEvent.ACTION_PERFORMED, "step"));
+			return;
+		}
+
+		// Conduct the wires every tick and convert the energies once every
+		// CONDUCTIONS_PER_STEP ticks
+		simulation.conductWires();
+		ticks++;
+		if (++conductions == Simulation.CONDUCTIONS_PER_STEP)
+		{
+			conductions = 0;
+			simulation.convertEnergy();
+			stepListener.actionPerformed(new ActionEvent(this,
+					ActionEvent.ACTION_PERFORMED, "step"));
+		}
+	}
+}
@@ -0,0 +1,80 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+
+import javax.imageio.ImageIO;
+import javax.swing.ImageIcon;
+
+/**
+ * SpriteCache - decodes each image in the images folder once and hands out
+ * the same Image every time it is asked for again, so items switching on and
+ * off and new items and wires never read or decode a file. Images are copied
+ * into a format that matches the screen so they draw without being converted
+ */
+public class SpriteCache
+{
+	/* Constants */
+	public static final String IMAGE_FOLDER = "./images/";
+
+	/* Variables */
+	// Images already decoded, by file name
+	private static HashMap<String, Image> images = new HashMap<String, Image>();
+
+	/**
+	 * Gives access to an image in the images folder, decoding it the first
+	 * time it is asked for
+	 *
+	 * @param fileName the file name of the image in the images folder
+	 * @return the image
+	 */
+	public static synchronized Image getImage(String fileName)
+	{
+		Image image = images.get(fileName);
+		if (image == null)
+		{
+			image = loadImage(IMAGE_FOLDER + fileName);
+			images.put(fileName, image);
+		}
+		return image;
+	}
+
+	/**
+	 * Decodes an image file into an image that matches the screen. If the file
+	 * cannot be decoded it is loaded the way Swing loads icons instead
+	 *
+	 * @param path the path of the image file
+	 * @return the decoded image
+	 */
+	private static Image loadImage(String path)
+	{
+		BufferedImage decoded;
+		try
+		{
+			decoded = ImageIO.read(new File(path));
+		}
+		catch (IOException e)
+		{
+			decoded = null;
+		}
+		if (decoded == null)
+			return new ImageIcon(path).getImage();
+
+		// Without a screen there is nothing to match
+		if (GraphicsEnvironment.isHeadless())
+			return decoded;
+
+		// Copy the image into the screen's format, keeping its transparency
+		GraphicsConfiguration configuration = GraphicsEnvironment
+				.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+				.getDefaultConfiguration();
+		BufferedImage compatible = configuration.createCompatibleImage(
+				decoded.getWidth(), decoded.getHeight(),
+				decoded.getTransparency());
+		Graphics2D g = compatible.createGraphics();
+		g.drawImage(decoded, 0, 0, null);
+		g.dispose();
+		return compatible;
+	}
+}
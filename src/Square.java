@@ -1,8 +1,9 @@
 import java.awt.*;
 
 /**
- * Square - the square objects that fill up the 2D board array of each level.
- * Each square keeps track of its item and energies
+ * Square - a view of one square of a level's board: its position, item and
+ * wire. The simulation keeps the board itself in chunks and bit boards and
+ * makes a Square whenever one is asked for
  * 
  * @author Derrick Thai and Riddle Li
  * @version v6.2Final, Last Updated: June 16, 2014
@@ -24,8 +25,18 @@ public class Square extends Rectangle
 	public static final int EMPTY = -1;
 	public static final int DISABLED = -2;
 
+	// Colours of boards drawn without a background image
+	private static final Color SQUARE_COLOUR = new Color(162, 164, 176);
+	private static final Color DIVIDER_COLOUR = new Color(124, 189, 221);
+
+	// Colours of the energies drawn over the squares
+	private static final Color LIGHT_COLOUR = new Color(245, 245, 35, 100);
+	private static final Color WATER_COLOUR = new Color(30, 145, 255, 100);
+
+	// Space left on each side of the water drawn in a square
+	private static final int WATER_MARGIN = 10;
+
 	// Variables
-	boolean[] energyState = new boolean[NO_OF_STATES];
 	private int itemIndex;
 	private boolean hasWire;
 
@@ -101,66 +112,163 @@ public class Square extends Rectangle
 	}
 
 	/**
-	 * Allow a given energy to occupy the square
-	 * 
-	 * @param energyIndex the integer representation of the energy type to be
-	 *            turned on
+	 * Disables the square so no items can be placed on it
 	 */
-	public void turnOnEnergy(int energyIndex)
+	public void disable()
 	{
-		energyState[energyIndex] = true;
+		itemIndex = DISABLED;
 	}
 
 	/**
-	 * Allow a given energy to no longer occupy the square
+	 * Draws the energies occupying this square in a Graphics context
 	 * 
-	 * @param energyIndex the integer representation of the energy type to be
-	 *            turned off
+	 * @param g the Graphics context to draw the square in
+	 * @param light whether or not light occupies the square
+	 * @param water whether or not water occupies the square
 	 */
-	public void turnOffEnergy(int energyIndex)
+	public void draw(Graphics g, boolean light, boolean water)
 	{
-		energyState[energyIndex] = false;
+		drawEnergies(g, x, y, width, light, water);
 	}
 
 	/**
-	 * Gives access to the whether or not a certain energy occupies the square
+	 * Draws the energies occupying a square in a Graphics context without
+	 * needing a Square, so a board can be drawn straight from its energies
 	 * 
-	 * @param energyIndex the integer representation of the energy type to be
-	 *            returned
-	 * @return
+	 * @param g the Graphics context to draw the square in
+	 * @param x the x coordinate of the square
+	 * @param y the y coordinate of the square
+	 * @param squareSize the width/height of the square
+	 * @param light whether or not light occupies the square
+	 * @param water whether or not water occupies the square
 	 */
-	public boolean returnEnergyState(int energyIndex)
+	public static void drawEnergies(Graphics g, int x, int y, int squareSize,
+			boolean light, boolean water)
 	{
-		return this.energyState[energyIndex];
+		if (light)
+		{
+			g.setColor(LIGHT_COLOUR);
+			g.fillRect(x, y, squareSize, squareSize);
+		}
+		if (water)
+		{
+			g.setColor(WATER_COLOUR);
+			g.fillRect(x + WATER_MARGIN, y, squareSize - 2 * WATER_MARGIN,
+					squareSize);
+		}
 	}
 
 	/**
-	 * Disables the square so no items can be placed on it
+	 * Draws the light and water of every square of a board inside the
+	 * Graphics context's clip straight from the energy layers. Each run of
+	 * lit squares along a row is one fill and so is each run of squares with
+	 * water down a column, so nothing is made and the number of fills does
+	 * not grow with the number of squares that have energy
+	 * 
+	 * @param g the Graphics context to draw the energies in
+	 * @param lightLayer the bits of the squares with light
+	 * @param waterLayer the bits of the squares with water
+	 * @param playCols the number of columns left of the inventory
+	 * @param squareSize the width/height of each square
 	 */
-	public void disable()
+	public static void drawEnergies(Graphics g, BitBoard lightLayer,
+			BitBoard waterLayer, int playCols, int squareSize)
 	{
-		itemIndex = DISABLED;
+		int noOfRows = lightLayer.getNoOfRows();
+		Rectangle clip = g.getClipBounds();
+		int firstRow = 0;
+		int lastRow = noOfRows - 1;
+		int firstCol = 0;
+		int lastCol = playCols - 1;
+		if (clip != null)
+		{
+			firstRow = Math.max(clip.y / squareSize, 0);
+			lastRow = Math.min((clip.y + clip.height - 1) / squareSize,
+					lastRow);
+			firstCol = Math.max(clip.x / squareSize, 0);
+			lastCol = Math.min((clip.x + clip.width - 1) / squareSize,
+					lastCol);
+		}
+		if (firstCol > lastCol)
+			return;
+
+		// Light a run of squares along each row at a time
+		g.setColor(LIGHT_COLOUR);
+		for (int row = firstRow; row <= lastRow; row++)
+			for (int word = firstCol / BitBoard.WORD_SIZE; word <= lastCol
+					/ BitBoard.WORD_SIZE; word++)
+			{
+				long bits = lightLayer.getWord(row, word)
+						& BitBoard.rangeMask(word, firstCol, lastCol + 1);
+				while (bits != 0)
+				{
+					int start = Long.numberOfTrailingZeros(bits);
+					int length = Long.numberOfTrailingZeros(~(bits >>> start));
+					g.fillRect((word * BitBoard.WORD_SIZE + start)
+							* squareSize, row * squareSize, length
+							* squareSize, squareSize);
+					if (start + length == BitBoard.WORD_SIZE)
+						break;
+					bits &= -1L << start + length;
+				}
+			}
+
+		// Pour a run of squares down each column at a time
+		g.setColor(WATER_COLOUR);
+		for (int col = firstCol; col <= lastCol; col++)
+		{
+			int runStart = -1;
+			for (int row = firstRow; row <= lastRow + 1; row++)
+			{
+				boolean water = row <= lastRow && waterLayer.get(row, col);
+				if (water && runStart == -1)
+					runStart = row;
+				else if (!water && runStart != -1)
+				{
+					g.fillRect(col * squareSize + WATER_MARGIN, runStart
+							* squareSize, squareSize - 2 * WATER_MARGIN,
+							(row - runStart) * squareSize);
+					runStart = -1;
+				}
+			}
+		}
 	}
 
 	/**
-	 * Draws this square in a Graphics context
+	 * Draws the empty squares of a board that has no background image, such
+	 * as a board that is not the default size. Only the squares inside the
+	 * Graphics context's clip are drawn and the column between the board and
+	 * the inventory is drawn as a divider
 	 * 
-	 * @param g the Graphics context to draw the square in
+	 * @param g the Graphics context to draw the board in
+	 * @param noOfRows the number of rows of the board
+	 * @param noOfCols the number of columns of the board
+	 * @param playCols the number of columns left of the inventory
+	 * @param squareSize the width/height of each square
 	 */
-	public void draw(Graphics g)
+	public static void drawBoard(Graphics g, int noOfRows, int noOfCols,
+			int playCols, int squareSize)
 	{
-		if (energyState[LIGHT] == true)
-		{
-			Color lightColour = new Color(245, 245, 35, 100);
-			g.setColor(lightColour);
-			g.fillRect(x, y, width, height);
-		}
-		if (energyState[WATER] == true)
-		{
-			Color waterColour = new Color(30, 145, 255, 100);
-			g.setColor(waterColour);
-			g.fillRect(x + 10, y, width - 20, height);
-		}
+		Rectangle clip = g.getClipBounds();
+		if (clip == null)
+			clip = new Rectangle(noOfCols * squareSize, noOfRows * squareSize);
+		int firstRow = Math.max(clip.y / squareSize, 0);
+		int lastRow = Math.min((clip.y + clip.height - 1) / squareSize,
+				noOfRows - 1);
+		int firstCol = Math.max(clip.x / squareSize, 0);
+		int lastCol = Math.min((clip.x + clip.width - 1) / squareSize,
+				noOfCols - 1);
+
+		// Black lines between the squares
+		g.setColor(Color.BLACK);
+		g.fillRect(clip.x, clip.y, clip.width, clip.height);
+		for (int row = firstRow; row <= lastRow; row++)
+			for (int col = firstCol; col <= lastCol; col++)
+			{
+				g.setColor(col == playCols ? DIVIDER_COLOUR : SQUARE_COLOUR);
+				g.fillRect(col * squareSize + 1, row * squareSize + 1,
+						squareSize - 2, squareSize - 2);
+			}
 	}
 
 	/**
@@ -1,7 +1,5 @@
 import java.awt.*;
 
-import javax.swing.*;
-
 /**
  * Wire - the wire objects that conduct electricity to other wires that are
  * connected and adjacent
@@ -30,7 +28,7 @@ public class Wire extends Rectangle
 		super(x, y, 0, 0);
 
 		// Initialize the wire type and image
-		image = new ImageIcon("./images/wire.png").getImage();
+		image = SpriteCache.getImage("wire.png");
 
 		// Set the wire size based off the image size
 		width = image.getWidth(parentFrame);
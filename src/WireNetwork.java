@@ -0,0 +1,189 @@
+/**
+ * WireNetwork - groups the wire squares of a board into connected components
+ * so electricity given to any wire square can reach its whole component at
+ * once. The components are found with a union-find when the network is built
+ * and stay the same until a wire is added or removed
+ */
+public class WireNetwork
+{
+	/* Constants */
+	// Component of a square without a wire
+	public static final int NO_COMPONENT = -1;
+
+	/* Variables */
+	private int noOfCols;
+
+	// Component of each square, or NO_COMPONENT. Only the chunks of the board
+	// with wires are stored
+	private ChunkedBoard components;
+	private int noOfComponents;
+
+	// The squares of component c are members[memberStart[c]] up to (but not
+	// including) members[memberStart[c + 1]]
+	private int[] memberStart;
+	private int[] members;
+
+	/**
+	 * Builds the wire network of a board. Wires only conduct to adjacent wires
+	 * in the first playCols columns. The work done is in proportion to the
+	 * number of wires, not the size of the board
+	 *
+	 * @param wireMask the bits of the squares with wires
+	 * @param playCols the number of columns electricity can reach
+	 */
+	public WireNetwork(BitBoard wireMask, int playCols)
+	{
+		int noOfRows = wireMask.getNoOfRows();
+		noOfCols = wireMask.getNoOfCols();
+
+		// Number the wires row by row, keeping the number of each wire on its
+		// square until the components are found
+		int noOfWires = 0;
+		for (int row = 0; row < noOfRows; row++)
+			for (int word = 0; word < wireMask.getWordsPerRow(); word++)
+				noOfWires += Long.bitCount(wireMask.getWord(row, word));
+		int[] wireSquares = new int[noOfWires];
+		components = new ChunkedBoard(noOfRows, noOfCols, NO_COMPONENT);
+		int wireNo = 0;
+		for (int row = 0; row < noOfRows; row++)
+			for (int col = wireMask.nextSetBit(row, 0); col != -1; col = wireMask
+					.nextSetBit(row, col + 1))
+			{
+				components.set(row, col, wireNo);
+				wireSquares[wireNo++] = row * noOfCols + col;
+			}
+
+		// Start with every wire in a set of its own and join each wire to the
+		// wires below and to the right of it
+		int[] parents = new int[noOfWires];
+		for (int wire = 0; wire < noOfWires; wire++)
+			parents[wire] = wire;
+		for (int wire = 0; wire < noOfWires; wire++)
+		{
+			int row = wireSquares[wire] / noOfCols;
+			int col = wireSquares[wire] % noOfCols;
+			if (col >= playCols)
+				continue;
+			if (row + 1 < noOfRows && wireMask.get(row + 1, col))
+				union(parents, wire, components.get(row + 1, col));
+			if (col + 1 < playCols && wireMask.get(row, col + 1))
+				union(parents, wire, wire + 1);
+		}
+
+		// Number the components in the order their first square appears and
+		// count the squares in each
+		int[] rootComponents = new int[noOfWires];
+		int[] wireComponents = new int[noOfWires];
+		int[] sizes = new int[noOfWires + 1];
+		for (int wire = 0; wire < noOfWires; wire++)
+			rootComponents[wire] = NO_COMPONENT;
+		for (int wire = 0; wire < noOfWires; wire++)
+		{
+			int root = find(parents, wire);
+			if (rootComponents[root] == NO_COMPONENT)
+				rootComponents[root] = noOfComponents++;
+			wireComponents[wire] = rootComponents[root];
+			sizes[wireComponents[wire]]++;
+			components.set(wireSquares[wire] / noOfCols, wireSquares[wire]
+					% noOfCols, wireComponents[wire]);
+		}
+
+		// Lay the squares of each component next to each other
+		memberStart = new int[noOfComponents + 1];
+		for (int component = 0; component < noOfComponents; component++)
+			memberStart[component + 1] = memberStart[component]
+					+ sizes[component];
+		members = new int[memberStart[noOfComponents]];
+		int[] nextMember = new int[noOfComponents];
+		System.arraycopy(memberStart, 0, nextMember, 0, noOfComponents);
+		for (int wire = 0; wire < noOfWires; wire++)
+			members[nextMember[wireComponents[wire]]++] = wireSquares[wire];
+	}
+
+	/**
+	 * Finds the root of the set a wire is in, shortening the path to it
+	 *
+	 * @param parents the parent of each wire
+	 * @param wire the wire to find the root of
+	 * @return the root of the wire's set
+	 */
+	private static int find(int[] parents, int wire)
+	{
+		while (parents[wire] != wire)
+		{
+			parents[wire] = parents[parents[wire]];
+			wire = parents[wire];
+		}
+		return wire;
+	}
+
+	/**
+	 * Joins the sets of two wires
+	 *
+	 * @param parents the parent of each wire
+	 * @param first the first wire
+	 * @param second the second wire
+	 */
+	private static void union(int[] parents, int first, int second)
+	{
+		parents[find(parents, first)] = find(parents, second);
+	}
+
+	/**
+	 * Finds the component the square at a row and column belongs to
+	 *
+	 * @param row the row of the square
+	 * @param col the column of the square
+	 * @return the component of the square, or NO_COMPONENT if it has no wire
+	 */
+	public int getComponent(int row, int col)
+	{
+		return components.get(row, col);
+	}
+
+	/**
+	 * Gives access to the number of components in the network
+	 *
+	 * @return the number of components
+	 */
+	public int getNoOfComponents()
+	{
+		return noOfComponents;
+	}
+
+	/**
+	 * Gives access to the position of a component's first square in the
+	 * member list
+	 *
+	 * @param component the component
+	 * @return the position of the component's first square
+	 */
+	public int getMemberStart(int component)
+	{
+		return memberStart[component];
+	}
+
+	/**
+	 * Gives access to the position after a component's last square in the
+	 * member list
+	 *
+	 * @param component the component
+	 * @return the position after the component's last square
+	 */
+	public int getMemberEnd(int component)
+	{
+		return memberStart[component + 1];
+	}
+
+	/**
+	 * Gives access to a square (row * number of columns + col) in the member
+	 * list
+	 *
+	 * @param position the position in the member list
+	 * @return the square at that position
+	 */
+	public int getMember(int position)
+	{
+		return members[position];
+	}
+}